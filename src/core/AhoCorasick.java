@@ -0,0 +1,308 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Matches a dictionary of patterns against a text in a single pass, with the
+ * Aho-Corasick automaton. The scan takes O(|text| + matches) time however many
+ * patterns there are.
+ *
+ * The goto function is stored as a double array: the transition from state s
+ * on character rank c goes to state base[s] + c if check[base[s] + c] == s.
+ * The states of all nodes are interleaved in two int arrays, so a transition
+ * is two array reads regardless of the alphabet size. Characters are ranked by
+ * an Alphabet of the patterns, and a text character outside it sends the
+ * automaton back to the root.
+ */
+public class AhoCorasick {
+
+    private static final int ROOT = 0;
+    private static final int FREE = -1;
+
+    private Alphabet alphabet;
+    private int[] patternLength;
+    private int[] nextPattern; // Next pattern ending in the same state, or NONE
+
+    private int[] base;
+    private int[] check;
+    private int[] fail;
+    private int[] output;      // First pattern ending in each state, or NONE
+    private int[] dictLink;    // Nearest state on the fail chain with an output, or NONE
+
+    /**
+     * Builds the automaton of a dictionary. Patterns are identified by their
+     * index in the list, and may occur more than once.
+     * @param patterns the non-empty patterns to search for
+     */
+    public AhoCorasick(List<String> patterns) {
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < patterns.size(); i++) {
+            if (patterns.get(i).isEmpty()) throw new IllegalArgumentException("Pattern "+i+" is empty");
+            all.append(patterns.get(i));
+        }
+        this.alphabet = Alphabet.of(all);
+
+        this.patternLength = new int[patterns.size()];
+        this.nextPattern   = new int[patterns.size()];
+        Arrays.fill(nextPattern, Alphabet.NONE);
+
+        Trie trie = buildTrie(patterns);
+        buildAutomaton(trie);
+    }
+
+    /**
+     * An occurrence of a pattern in the text.
+     */
+    public static class Match {
+        public final int pattern;  // Index of the pattern in the dictionary
+        public final int position; // 1-based start in the text
+
+        public Match(int pattern, int position) {
+            this.pattern  = pattern;
+            this.position = position;
+        }
+
+        public String toString() { return "(" + pattern + "," + position + ")"; }
+
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Match)) return false;
+            Match o = (Match) obj;
+            return pattern == o.pattern && position == o.position;
+        }
+
+        public int hashCode() { return pattern * 31 + position; }
+    }
+
+    /**
+     * Receives the matches of a scan as they are found.
+     */
+    public interface Listener {
+        /**
+         * @param pattern the index of the pattern in the dictionary
+         * @param position the 1-based start of the match in the text
+         */
+        void match(int pattern, int position);
+    }
+
+    /**
+     * @return the number of patterns in the dictionary
+     */
+    public int getPatternCount() {
+        return patternLength.length;
+    }
+
+    /**
+     * Lists all occurrences of all patterns in a text.
+     * @param text the text to scan
+     * @return every match, ordered by where it ends in the text
+     */
+    public List<Match> search(CharSequence text) {
+        final List<Match> res = new ArrayList<Match>();
+        search(text, new Listener() {
+            public void match(int pattern, int position) {
+                res.add(new Match(pattern, position));
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Scans a text, reporting every occurrence of every pattern to a listener
+     * as soon as its last character is read.
+     * @param text the text to scan
+     * @param listener receives the matches
+     */
+    public void search(CharSequence text, Listener listener) {
+        int s = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            int c = alphabet.rank(text.charAt(i));
+            s = (c == Alphabet.NONE) ? ROOT : step(s, c);
+            for (int u = (output[s] != Alphabet.NONE) ? s : dictLink[s]; u != Alphabet.NONE; u = dictLink[u]) {
+                for (int p = output[u]; p != Alphabet.NONE; p = nextPattern[p]) {
+                    listener.match(p, i - patternLength[p] + 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Follows the transition on a character rank, falling back along the fail
+     * links until a state has one.
+     * @return the next state of the automaton
+     */
+    private int step(int s, int c) {
+        while (true) {
+            int t = base[s] + c;
+            if (t < check.length && check[t] == s) return t;
+            if (s == ROOT) return ROOT;
+            s = fail[s];
+        }
+    }
+
+    /**
+     * The trie of the dictionary, with children in increasing rank order.
+     */
+    private static class Trie {
+        int[] firstChild;
+        int[] nextSibling;
+        int[] lastChild;
+        int[] label;
+        int[] output; // First pattern ending in each node, or NONE
+        int size;
+
+        Trie(int capacity) {
+            firstChild  = new int[capacity];
+            nextSibling = new int[capacity];
+            lastChild   = new int[capacity];
+            label       = new int[capacity];
+            output      = new int[capacity];
+            newNode(0);
+        }
+
+        int newNode(int c) {
+            int n = size++;
+            firstChild[n]  = Alphabet.NONE;
+            nextSibling[n] = Alphabet.NONE;
+            lastChild[n]   = Alphabet.NONE;
+            label[n]       = c;
+            output[n]      = Alphabet.NONE;
+            return n;
+        }
+    }
+
+    /**
+     * Builds the trie by inserting the patterns in sorted order. A new child
+     * then always goes after the existing children of its node, so the only
+     * child that can match is the last one.
+     */
+    private Trie buildTrie(final List<String> patterns) {
+        final String[] encoded = new String[patterns.size()];
+        Integer[] order = new Integer[patterns.size()];
+        int total = 1;
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = alphabet.encodeQuery(patterns.get(i));
+            order[i] = i;
+            total += encoded[i].length();
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer p1, Integer p2) {
+                return encoded[p1].compareTo(encoded[p2]);
+            }
+        });
+
+        Trie trie = new Trie(total);
+        for (int p : order) {
+            String pattern = encoded[p];
+            int n = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                int c = pattern.charAt(i);
+                int last = trie.lastChild[n];
+                if (last != Alphabet.NONE && trie.label[last] == c) {
+                    n = last;
+                    continue;
+                }
+                int child = trie.newNode(c);
+                if (last == Alphabet.NONE) trie.firstChild[n] = child;
+                else                       trie.nextSibling[last] = child;
+                trie.lastChild[n] = child;
+                n = child;
+            }
+            patternLength[p] = pattern.length();
+            nextPattern[p] = trie.output[n];
+            trie.output[n] = p;
+        }
+        return trie;
+    }
+
+    /**
+     * Lays the trie out in the double array, breadth first. The children of
+     * each node are placed at the lowest base where all their slots are free.
+     *
+     * The fail link of a state is the state of its longest proper suffix in
+     * the trie. It is found from the fail link of the parent, which is
+     * shallower, and so is known (and has its children placed) by the time
+     * the breadth first walk gets to the state.
+     */
+    private void buildAutomaton(Trie trie) {
+        int capacity = trie.size + alphabet.size() + 1;
+        base     = new int[capacity];
+        check    = new int[capacity];
+        output   = new int[capacity];
+        fail     = new int[capacity];
+        dictLink = new int[capacity];
+        Arrays.fill(check, FREE);
+        Arrays.fill(output, Alphabet.NONE);
+        Arrays.fill(dictLink, Alphabet.NONE);
+
+        int[] state = new int[trie.size]; // State of each trie node
+        int[] queue = new int[trie.size];
+        int head = 0, tail = 0;
+        state[ROOT] = ROOT;
+        check[ROOT] = ROOT;
+        output[ROOT] = trie.output[ROOT];
+        queue[tail++] = ROOT;
+
+        int firstFree = 1;
+        while (head < tail) {
+            int n = queue[head++];
+            int s = state[n];
+            if (trie.firstChild[n] == Alphabet.NONE) continue;
+
+            while (firstFree < check.length && check[firstFree] != FREE) firstFree++;
+            int first = trie.label[trie.firstChild[n]];
+            int b = Math.max(firstFree - first, 0);
+            while (!fits(trie, n, b)) b++;
+
+            base[s] = b;
+            for (int c = trie.firstChild[n]; c != Alphabet.NONE; c = trie.nextSibling[c]) {
+                int t = b + trie.label[c];
+                check[t]  = s;
+                output[t] = trie.output[c];
+                fail[t]   = (s == ROOT) ? ROOT : step(fail[s], trie.label[c]);
+                dictLink[t] = (output[fail[t]] != Alphabet.NONE) ? fail[t] : dictLink[fail[t]];
+                state[c] = t;
+                queue[tail++] = c;
+            }
+        }
+
+        // Trim the slack left at the end
+        int used = check.length;
+        while (used > 1 && check[used - 1] == FREE) used--;
+        base     = Arrays.copyOf(base, used);
+        check    = Arrays.copyOf(check, used);
+        output   = Arrays.copyOf(output, used);
+        fail     = Arrays.copyOf(fail, used);
+        dictLink = Arrays.copyOf(dictLink, used);
+    }
+
+    /**
+     * @return whether the children of trie node n all have free slots from base b
+     */
+    private boolean fits(Trie trie, int n, int b) {
+        for (int c = trie.firstChild[n]; c != Alphabet.NONE; c = trie.nextSibling[c]) {
+            int t = b + trie.label[c];
+            if (t >= check.length) grow(t + 1);
+            if (check[t] != FREE) return false;
+        }
+        return true;
+    }
+
+    private void grow(int min) {
+        int capacity = Math.max(min, check.length + (check.length >> 1));
+        int oldLength = check.length;
+        base     = Arrays.copyOf(base, capacity);
+        check    = Arrays.copyOf(check, capacity);
+        output   = Arrays.copyOf(output, capacity);
+        fail     = Arrays.copyOf(fail, capacity);
+        dictLink = Arrays.copyOf(dictLink, capacity);
+        Arrays.fill(check, oldLength, capacity, FREE);
+        Arrays.fill(output, oldLength, capacity, Alphabet.NONE);
+        Arrays.fill(dictLink, oldLength, capacity, Alphabet.NONE);
+    }
+
+}
@@ -0,0 +1,121 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Maps the characters of a text to dense ranks 1..size(). Rank 0 is reserved
+ * for the terminator that ends every indexed text, so the terminator can never
+ * collide with a character of the input.
+ *
+ * An alphabet built from a text (see of) ranks its characters in character
+ * order. An empty alphabet grows as characters are added, ranking them in the
+ * order they are first seen.
+ */
+public class Alphabet {
+
+    public static final int NONE = -1;
+    public static final int TERMINATOR = 0;
+
+    /** How the terminator is shown when decoding. */
+    public static final char TERMINATOR_DISPLAY = '$';
+
+    private char[] rank;    // Rank of each character, 0 if the character is not in the alphabet
+    private char[] symbols; // Character of each rank, symbols[0] is unused
+    private int size;
+
+    /**
+     * Creates an empty alphabet.
+     */
+    public Alphabet() {
+        this.rank    = new char[Character.MAX_VALUE + 1];
+        this.symbols = new char[16];
+        this.size    = 0;
+    }
+
+    /**
+     * Creates the alphabet of the characters in a text, ranked in character order.
+     */
+    public static Alphabet of(CharSequence s) {
+        boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+        for (int i = 0; i < s.length(); i++) seen[s.charAt(i)] = true;
+
+        Alphabet alphabet = new Alphabet();
+        for (int c = 0; c < seen.length; c++) {
+            if (seen[c]) alphabet.add((char) c);
+        }
+        return alphabet;
+    }
+
+    /**
+     * @return the number of characters in the alphabet (not counting the terminator)
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the rank of a character, or NONE if it is not in the alphabet
+     */
+    public int rank(char c) {
+        int r = rank[c];
+        return (r == 0) ? NONE : r;
+    }
+
+    /**
+     * @return the character of a rank
+     */
+    public char symbol(int r) {
+        return (r == TERMINATOR) ? TERMINATOR_DISPLAY : symbols[r];
+    }
+
+    /**
+     * Adds a character to the alphabet, unless it is already there.
+     * @return the rank of the character
+     */
+    public int add(char c) {
+        if (rank[c] != 0) return rank[c];
+        if (size == Character.MAX_VALUE) throw new IllegalArgumentException("Alphabet is full");
+
+        size++;
+        if (size == symbols.length) symbols = Arrays.copyOf(symbols, symbols.length * 2);
+        symbols[size] = c;
+        rank[c] = (char) size;
+        return size;
+    }
+
+    /**
+     * Encodes a text and appends the terminator. The storage is picked by the
+     * alphabet size: two bits per character for up to four characters (e.g.
+     * DNA), a byte per character for up to 255, and a char otherwise.
+     */
+    public EncodedText encode(CharSequence s) {
+        if (size <= 4)   return new EncodedText.Packed(this, s);
+        if (size <= 255) return new EncodedText.Bytes(this, s);
+        return new EncodedText.Chars(this, s);
+    }
+
+    /**
+     * Encodes a query string without a terminator.
+     * @return the ranks of the query as a string, or null if the query has a
+     * character which is not in the alphabet (and therefore cannot occur)
+     */
+    public String encodeQuery(CharSequence query) {
+        char[] ranks = new char[query.length()];
+        for (int i = 0; i < ranks.length; i++) {
+            int r = rank(query.charAt(i));
+            if (r == NONE) return null;
+            ranks[i] = (char) r;
+        }
+        return new String(ranks);
+    }
+
+    /**
+     * Decodes a sequence of ranks, e.g. an edge label.
+     */
+    public String decode(CharSequence ranks) {
+        StringBuilder sb = new StringBuilder(ranks.length());
+        for (int i = 0; i < ranks.length(); i++) sb.append(symbol(ranks.charAt(i)));
+        return sb.toString();
+    }
+
+}
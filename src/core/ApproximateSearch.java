@@ -0,0 +1,235 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Approximate search in a suffix tree: finds every start position in the text
+ * where the pattern occurs with at most k differences.
+ *
+ * The tree is walked depth first from the root, one edge character at a time.
+ * Hamming distance only needs the number of mismatches so far. Edit distance
+ * keeps a column of the DP table of the pattern against the path label, of
+ * which only the band of 2k+1 cells around the diagonal can be k or less, so
+ * only that band is stored and the columns take O((|P| + k) k) space. A
+ * path is abandoned as soon as it can't get within k any more, so the walk
+ * never goes deeper than |P| + k and, for small k, visits a part of the tree
+ * bounded by |P|, k and the number of hits rather than by |T|.
+ */
+public class ApproximateSearch {
+
+    /**
+     * The distance an occurrence is measured by.
+     */
+    public enum Mode {
+        /** Substitutions only, so occurrences are exactly |P| long. */
+        HAMMING,
+        /** Substitutions, insertions and deletions. */
+        EDIT
+    }
+
+    /**
+     * An approximate occurrence of a pattern.
+     */
+    public static class Match {
+        public final int position; // 1-based start in the text
+        public final int distance; // Smallest distance of an occurrence starting here
+
+        public Match(int position, int distance) {
+            this.position = position;
+            this.distance = distance;
+        }
+
+        public String toString() { return "(" + position + "," + distance + ")"; }
+
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Match)) return false;
+            Match o = (Match) obj;
+            return position == o.position && distance == o.distance;
+        }
+
+        public int hashCode() { return position * 31 + distance; }
+    }
+
+    private final EncodedText input;
+    private final FlatTree tree;
+    private final char[] pattern; // Encoded, with symbols not in the text as NO_RANK
+    private final int k;
+    private final List<Match> res;
+
+    // Stack of (edge to walk, depth of its parent, distance down to its parent)
+    private int[] stack;
+    private int top;
+
+    /** Stands in for a pattern symbol that is not in the text, so it never matches. */
+    private static final char NO_RANK = Character.MAX_VALUE;
+
+    private ApproximateSearch(Alphabet alphabet, EncodedText input, FlatTree tree, String pattern, int k) {
+        this.input   = input;
+        this.tree    = tree;
+        this.k       = k;
+        this.res     = new ArrayList<Match>();
+        this.stack   = new int[48];
+        this.pattern = new char[pattern.length()];
+        for (int i = 0; i < this.pattern.length; i++) {
+            int r = alphabet.rank(pattern.charAt(i));
+            this.pattern[i] = (r == Alphabet.NONE) ? NO_RANK : (char) r;
+        }
+    }
+
+    /**
+     * Finds the approximate occurrences of a pattern.
+     * @param pattern the string to search for
+     * @param k the largest distance allowed
+     * @param mode the distance to use
+     * @return for every start position with an occurrence within distance k,
+     * the position and the smallest such distance, in no particular order
+     */
+    static List<Match> search(Alphabet alphabet, EncodedText input, FlatTree tree, String pattern, int k, Mode mode) {
+        if (k < 0) throw new IllegalArgumentException("Negative distance "+k);
+        if (mode == null) throw new IllegalArgumentException("No distance mode");
+
+        ApproximateSearch search = new ApproximateSearch(alphabet, input, tree, pattern, k);
+        if (mode == Mode.HAMMING) search.searchHamming();
+        else                      search.searchEdit();
+        return search.res;
+    }
+
+    /**
+     * Walks the paths of at most k mismatches down to depth |P|.
+     */
+    private void searchHamming() {
+        int m = pattern.length;
+        if (m == 0) {
+            report(FlatTree.ROOT, 0);
+            return;
+        }
+
+        pushChildren(FlatTree.ROOT, 0, 0);
+        while (top > 0) {
+            top -= 3;
+            int e = stack[top];
+            int depth = stack[top + 1];
+            int mismatches = stack[top + 2];
+
+            int start = tree.getEdgeStart(e) - depth;
+            int end = Math.min(depth + tree.getEdgeLength(e), m);
+            while (depth < end) {
+                char c = input.charAt(start + depth);
+                if (c == Alphabet.TERMINATOR) break;
+                if (c != pattern[depth] && ++mismatches > k) break;
+                depth++;
+            }
+
+            if (depth == m) {
+                report(e, mismatches);
+            } else if (depth == end && mismatches <= k) {
+                pushChildren(e, depth, mismatches);
+            }
+        }
+    }
+
+    /**
+     * Walks the paths whose DP column still has a cell of at most k. Column j
+     * of depth d holds the edit distance of the first j pattern symbols and the
+     * d symbols of the path label. Only the cells with |j - d| <= k can be k or
+     * less, so a column is stored as a band of 2k+3 cells, with cell
+     * j - d + k + 1 holding row j and a cell of k + 1 at both ends. The leaves
+     * below a path get the smallest distance of the whole pattern seen along
+     * it, once the path is abandoned.
+     */
+    private void searchEdit() {
+        int m = pattern.length;
+        int cap = k + 1; // Every distance above k is stored as k + 1
+        int width = 2 * k + 3;
+        int maxDepth = m + k;
+        if (m == 0) {
+            report(FlatTree.ROOT, 0);
+            return;
+        }
+        int[][] columns = new int[maxDepth + 1][];
+        columns[0] = new int[width];
+        for (int i = 0; i < width; i++) columns[0][i] = (i < cap) ? cap : Math.min(i - cap, cap);
+
+        pushChildren(FlatTree.ROOT, 0, Math.min(m, cap));
+        while (top > 0) {
+            top -= 3;
+            int e = stack[top];
+            int depth = stack[top + 1];
+            int best = stack[top + 2];
+
+            // The columns of the ancestors are still there, as the stack is walked depth first
+            int start = tree.getEdgeStart(e) - depth;
+            int end = depth + tree.getEdgeLength(e);
+            boolean alive = true;
+            while (depth < end) {
+                char c = input.charAt(start + depth);
+                if (c == Alphabet.TERMINATOR || depth == maxDepth) {
+                    alive = false;
+                    break;
+                }
+                int[] prev = columns[depth];
+                depth++;
+                if (columns[depth] == null) columns[depth] = new int[width];
+                int[] col = columns[depth];
+
+                // Cell i holds row i + offset. The cells of rows outside 0..m
+                // stay at k + 1, and so do the two ends of the band
+                int offset = depth - cap;
+                Arrays.fill(col, cap);
+                int min = cap;
+                if (offset < 0) min = col[-offset] = depth;
+                int lo = Math.max(1, 1 - offset);
+                int hi = Math.min(width - 2, m - offset);
+                for (int i = lo; i <= hi; i++) {
+                    int v = prev[i] + ((pattern[i + offset - 1] == c) ? 0 : 1);
+                    v = Math.min(v, prev[i + 1] + 1);
+                    v = Math.min(v, col[i - 1] + 1);
+                    if (v > cap) v = cap;
+                    col[i] = v;
+                    if (v < min) min = v;
+                }
+
+                if (hi == m - offset && col[hi] < best) best = col[hi];
+                if (min > k) {
+                    alive = false;
+                    break;
+                }
+            }
+
+            if (!alive || tree.isLeaf(e)) {
+                if (best <= k) report(e, best);
+            } else {
+                pushChildren(e, depth, best);
+            }
+        }
+    }
+
+    /**
+     * Pushes the children of a node onto the stack.
+     */
+    private void pushChildren(int n, int depth, int distance) {
+        for (int c = tree.getFirstChild(n); c != FlatTree.NONE; c = tree.getNextSibling(c)) {
+            if (top + 3 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top]     = c;
+            stack[top + 1] = depth;
+            stack[top + 2] = distance;
+            top += 3;
+        }
+    }
+
+    /**
+     * Adds every leaf below a node with the given distance, except the one of
+     * the empty suffix.
+     */
+    private void report(int n, int distance) {
+        List<Integer> leaves = new ArrayList<Integer>();
+        tree.collectLeaves(n, leaves);
+        for (int leaf : leaves) {
+            if (leaf < input.length()) res.add(new Match(leaf, distance));
+        }
+    }
+
+}
@@ -23,37 +23,41 @@ public class DotMaker implements Closeable {
     }
 
 
-    public void addTree(Node root) {
+    public void addTree(final FlatTree tree, final Alphabet alphabet) {
         // Run through the tree
-        printSubtreeNodes(root);
+        tree.walk(FlatTree.ROOT, 0, new FlatTree.Visitor() {
+            @Override
+            public void enter(int n, int depth) { printNode(tree, n); }
+            @Override
+            public void leave(int n, int depth) { }
+        });
         out.println("");
-        printSubtreeEdges(root);
+        tree.walk(FlatTree.ROOT, 0, new FlatTree.Visitor() {
+            @Override
+            public void enter(int n, int depth) { if (n != FlatTree.ROOT) printEdge(tree, alphabet, n); }
+            @Override
+            public void leave(int n, int depth) { }
+        });
         prefixIdx++;
     }
 
-    private void printSubtreeNodes(Node n) {
+    private void printNode(FlatTree tree, int n) {
         // Print a label (index i) on terminal nodes
         String label = "";
         String shape = "ellipse";
 
-        if (n.getAllEdges().isEmpty()) {
-            label = n.leafIdx + "";
+        if (tree.isLeaf(n)) {
+            label = tree.getLeafIdx(n) + "";
             shape = "ellipse";
         }
 
-        out.println("\t\"_["+prefixIdx+"]_" + n.hashCode() + "\" [label=\""+label+"\", shape=\""+shape+"\"]");
-
-        for (Edge e : n.getAllEdges()) {
-            printSubtreeNodes(e.getTo());
-        }
+        out.println("\t\"_["+prefixIdx+"]_" + n + "\" [label=\""+label+"\", shape=\""+shape+"\"]");
     }
 
-    private void printSubtreeEdges(Node n) {
+    private void printEdge(FlatTree tree, Alphabet alphabet, int c) {
+        int n = tree.getParent(c);
 //        if (n.getSuffixLink() != null) out.println("\t\"_["+prefixIdx+"]_" + n.getLabel() + "\" -> \"_["+prefixIdx+"]_" + n.getSuffixLink().getLabel() + "\" [weight=0, color=\"blue\", style=\"dotted\"]");
-        for (Edge e : n.getAllEdges()) {
-            out.println("\t\"_["+prefixIdx+"]_" + n.hashCode() + "\" -> \"_["+prefixIdx+"]_" + e.getTo().hashCode() + "\" [label=\" "+ e.getLabel() +"\"]");
-            printSubtreeEdges(e.getTo());
-        }
+        out.println("\t\"_["+prefixIdx+"]_" + n + "\" -> \"_["+prefixIdx+"]_" + c + "\" [label=\" "+ alphabet.decode(tree.getLabel(c)) +"\"]");
     }
 
 
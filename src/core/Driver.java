@@ -1,15 +1,24 @@
 package core;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Driver {
 
     public static void main(String[] args) throws Exception {
 //        tandemRepeats(args);
+//        indexedSearch(args);
+//        streamSearch(args);
+//        serve(args);
         exactPatternMatch(args);
     }
 
@@ -39,6 +48,105 @@ public class Driver {
         em.printSearch(em.searchBorderArray());
     }
 
+    private static void indexedSearch(String[] args) throws IOException {
+        // Print usage help
+        if (args.length != 3) {
+            System.out.println("Please call this program with a file, an index file and a search string.");
+            System.out.println("Ex. java core.Driver file.txt file.idx xx");
+            return;
+        }
+
+        // Build and save the index, unless a previous run already did
+        File indexFile = new File(args[1]);
+        if (!indexFile.exists()) {
+            StringBuilder input = new StringBuilder();
+            BufferedReader br = new BufferedReader(new FileReader(args[0]));
+            int c;
+            while ((c = br.read()) != -1) if (c != '\r' && c != '\n') input.append((char) c);
+            br.close();
+
+            McCreight mc = new McCreight(input.toString());
+            IndexFile.write(mc.getTree(), mc.getAlphabet(), indexFile);
+        }
+
+        // Map the index and search it for the query string
+        MappedIndex index = IndexFile.load(indexFile);
+        List<Integer> search = index.search(args[2]);
+        Collections.sort(search);
+        index.close();
+
+        // Print result
+        System.out.println();
+        System.out.print("The search returned:");
+        for (int i : search) {
+            System.out.print(" " + i);
+        }
+        System.out.println();
+    }
+
+    private static void streamSearch(String[] args) throws IOException {
+        // Print usage help
+        if (args.length != 2) {
+            System.out.println("Please call this program with a file and a search string.");
+            System.out.println("Ex. java core.Driver file.txt xx");
+            return;
+        }
+
+        // Search the file as it is read, printing the byte position of every match
+        System.out.println();
+        System.out.print("The search returned:");
+        FileChannel channel = new FileInputStream(args[0]).getChannel();
+        long count = new StreamMatch(args[1]).search(channel, new StreamMatch.Listener() {
+            public void match(long position) {
+                System.out.print(" " + position);
+            }
+        });
+        channel.close();
+        System.out.println();
+        System.out.println(count + " matches");
+    }
+
+    private static void serve(String[] args) throws IOException {
+        // Print usage help
+        if (args.length < 1 || args.length > 4) {
+            System.out.println("Please call this program with a file, optionally an index file, and optionally a socket to listen on.");
+            System.out.println("Patterns are then read a line at a time from stdin, or from each connection to the socket.");
+            System.out.println("Ex. java core.Driver file.txt [file.idx] [--tcp 7070 | --unix /tmp/stralg.sock]");
+            return;
+        }
+
+        // Load the index, or build it (and save it, if an index file is given)
+        String indexName = (args.length == 2 || args.length == 4) ? args[1] : null;
+        SearchIndex index;
+        if (indexName != null && new File(indexName).exists()) {
+            index = IndexFile.load(new File(indexName));
+        } else {
+            StringBuilder input = new StringBuilder();
+            BufferedReader br = new BufferedReader(new FileReader(args[0]));
+            int c;
+            while ((c = br.read()) != -1) if (c != '\r' && c != '\n') input.append((char) c);
+            br.close();
+
+            McCreight mc = new McCreight(input.toString());
+            if (indexName != null) IndexFile.write(mc.getTree(), mc.getAlphabet(), new File(indexName));
+            index = mc.freeze();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        QueryServer server = new QueryServer(index, executor);
+        try {
+            if (args.length >= 3 && args[args.length - 2].equals("--tcp")) {
+                server.serve(QueryServer.openTcp(Integer.parseInt(args[args.length - 1])));
+            } else if (args.length >= 3 && args[args.length - 2].equals("--unix")) {
+                server.serve(QueryServer.openUnix(Paths.get(args[args.length - 1])));
+            } else {
+                server.serve(System.in, System.out);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     private static void tandemRepeats(String[] args) throws IOException {
 //        // Print usage help
 //        if (args.length != 1) {
@@ -0,0 +1,203 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * A text stored as alphabet ranks and ended by the terminator. charAt returns
+ * ranks, so the suffix tree and suffix array code can work on it as on any
+ * other CharSequence. The terminator is implicit and takes no space.
+ */
+public abstract class EncodedText implements CharSequence {
+
+    protected Alphabet alphabet;
+    protected int length;
+
+    protected EncodedText(Alphabet alphabet, int length) {
+        this.alphabet = alphabet;
+        this.length   = length;
+    }
+
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * @return the number of ranks, including the terminator
+     */
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int i) {
+        if (i == length - 1) return (char) Alphabet.TERMINATOR;
+        return (char) rankAt(i);
+    }
+
+    /**
+     * @return the rank at an index before the terminator
+     */
+    protected abstract int rankAt(int i);
+
+    /**
+     * @return the number of bytes used for the ranks
+     */
+    public abstract long bytes();
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        char[] ranks = new char[end - start];
+        for (int i = start; i < end; i++) ranks[i - start] = charAt(i);
+        return new String(ranks);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+    /**
+     * Checks whether the ranks from an index equal those of an encoded query.
+     */
+    public boolean regionMatches(int idx, String ranks, int from, int count) {
+        if (idx < 0 || idx + count > length) return false;
+        for (int i = 0; i < count; i++) {
+            if (charAt(idx + i) != ranks.charAt(from + i)) return false;
+        }
+        return true;
+    }
+
+    private static int checkRank(Alphabet alphabet, char c) {
+        int r = alphabet.rank(c);
+        if (r == Alphabet.NONE) throw new IllegalArgumentException("Character "+c+" is not in the alphabet");
+        return r;
+    }
+
+    /**
+     * Two bits per character, for alphabets of up to four characters.
+     */
+    static class Packed extends EncodedText {
+        private long[] words;
+
+        Packed(Alphabet alphabet, CharSequence s) {
+            super(alphabet, s.length() + 1);
+            words = new long[(s.length() + 31) >>> 5];
+            for (int i = 0; i < s.length(); i++) {
+                words[i >>> 5] |= (long) (checkRank(alphabet, s.charAt(i)) - 1) << ((i & 31) << 1);
+            }
+        }
+
+        protected int rankAt(int i) {
+            return (int) (words[i >>> 5] >>> ((i & 31) << 1) & 3) + 1;
+        }
+
+        public long bytes() {
+            return 8L * words.length;
+        }
+    }
+
+    /**
+     * A byte per character, for alphabets of up to 255 characters.
+     */
+    static class Bytes extends EncodedText {
+        private byte[] ranks;
+
+        Bytes(Alphabet alphabet, CharSequence s) {
+            super(alphabet, s.length() + 1);
+            ranks = new byte[s.length()];
+            for (int i = 0; i < ranks.length; i++) ranks[i] = (byte) checkRank(alphabet, s.charAt(i));
+        }
+
+        protected int rankAt(int i) {
+            return ranks[i] & 0xFF;
+        }
+
+        public long bytes() {
+            return ranks.length;
+        }
+    }
+
+    /**
+     * A char per character, for any alphabet.
+     */
+    static class Chars extends EncodedText {
+        private char[] ranks;
+
+        Chars(Alphabet alphabet, CharSequence s) {
+            super(alphabet, s.length() + 1);
+            ranks = new char[s.length()];
+            for (int i = 0; i < ranks.length; i++) ranks[i] = (char) checkRank(alphabet, s.charAt(i));
+        }
+
+        protected int rankAt(int i) {
+            return ranks[i];
+        }
+
+        public long bytes() {
+            return 2L * ranks.length;
+        }
+    }
+
+    /**
+     * Ranks appended one at a time, for a text whose alphabet grows as it is
+     * read (see Ukkonen). Ranks take two bits each while they are at most
+     * four, and are widened to a byte and then a char when a larger one is
+     * appended. The terminator is only there once it has been appended.
+     */
+    static class Growable extends EncodedText {
+        private long[] words;  // Every rank minus one, bits each
+        private int bits;      // 2, 8 or 16
+        private int shift;     // log2 of the ranks per word
+        private boolean terminated;
+
+        Growable(Alphabet alphabet) {
+            super(alphabet, 0);
+            words = new long[4];
+            bits  = 2;
+            shift = 5;
+        }
+
+        /**
+         * Appends a rank, or the terminator. Nothing can be appended after the terminator.
+         */
+        void append(int rank) {
+            if (terminated) throw new IllegalStateException("Can't append after the terminator");
+            if (rank == Alphabet.TERMINATOR) {
+                terminated = true;
+                length++;
+                return;
+            }
+            if (rank - 1 >= 1 << bits) widen((rank - 1 >= 1 << 8) ? 16 : 8);
+            if (length >>> shift == words.length) words = Arrays.copyOf(words, words.length * 2);
+            words[length >>> shift] |= (long) (rank - 1) << ((length & ((1 << shift) - 1)) * bits);
+            length++;
+        }
+
+        private void widen(int newBits) {
+            int newShift = (newBits == 8) ? 3 : 2;
+            long[] wide = new long[Math.max(((length + (1 << newShift) - 1) >>> newShift) * 2, 4)];
+            for (int i = 0; i < length; i++) {
+                wide[i >>> newShift] |= (long) (rankAt(i) - 1) << ((i & ((1 << newShift) - 1)) * newBits);
+            }
+            words = wide;
+            bits  = newBits;
+            shift = newShift;
+        }
+
+        @Override
+        public char charAt(int i) {
+            if (terminated && i == length - 1) return (char) Alphabet.TERMINATOR;
+            return (char) rankAt(i);
+        }
+
+        protected int rankAt(int i) {
+            return (int) (words[i >>> shift] >>> ((i & ((1 << shift) - 1)) * bits) & ((1L << bits) - 1)) + 1;
+        }
+
+        public long bytes() {
+            return 8L * words.length;
+        }
+    }
+
+}
@@ -1,10 +1,19 @@
 package core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class ExactMatch {
 
+    /** Shortest pattern searched with Horspool by search(). Shorter ones use the first character filter. */
+    public static final int HORSPOOL_MIN_LENGTH = 4;
+
+    /** Shortest chunk searchParallel splits the text into. */
+    public static final int PARALLEL_MIN_CHUNK = 1 << 16;
+
     private String input;
     private String pattern;
 
@@ -16,7 +25,7 @@ public class ExactMatch {
     public List<Integer> searchNaive() {
         List<Integer> res = new ArrayList<Integer>();
         for (int i = 0; i < input.length() - pattern.length() + 1; i++) {
-            if (pattern.equals(input.substring(i, i + pattern.length()))) {
+            if (input.startsWith(pattern, i)) {
                 res.add(i + 1);
             }
         }
@@ -38,16 +47,19 @@ public class ExactMatch {
 
     public List<Integer> searchKMP() {
         List<Integer> res = new ArrayList<Integer>();
+        searchKMP(input.toCharArray(), pattern.toCharArray(), constructBorderArray(pattern), 0, input.length(), res);
+        return res;
+    }
 
-        char[] t = input.toCharArray();
-        char[] p = pattern.toCharArray();
-
-        int n = input.length();
-        int m = pattern.length();
-        int[] pi = constructBorderArray(pattern);
+    /**
+     * Runs KMP over the text between from (inclusive) and to (exclusive), and
+     * adds the matches lying entirely inside that range.
+     */
+    private static void searchKMP(char[] t, char[] p, int[] pi, int from, int to, List<Integer> res) {
+        int m = p.length;
         int q = 0;
 
-        for (int i = 0; i < n; i++) {
+        for (int i = from; i < to; i++) {
             while (q > 0 && p[q] != t[i]) {
                 q = pi[q - 1];
             }
@@ -61,11 +73,148 @@ public class ExactMatch {
                 q = pi[q-1];
             }
         }
+    }
+
+    /**
+     * KMP search split over the common fork-join pool.
+     */
+    public List<Integer> searchParallel() {
+        return searchParallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * KMP search split into chunks that are searched in parallel. Each chunk
+     * is the range of start positions it reports, extended by |pattern|-1
+     * characters so matches crossing into the next chunk are found. A match
+     * starting in the next chunk can't fit in the extension, so no match is
+     * reported twice, and the results are joined in chunk order.
+     * @param pool the pool to search on
+     * @return the same positions as searchKMP, in the same order
+     */
+    public List<Integer> searchParallel(ForkJoinPool pool) {
+        if (pattern.isEmpty()) return searchNaive();
+
+        char[] t = input.toCharArray();
+        char[] p = pattern.toCharArray();
+        int[] pi = constructBorderArray(pattern);
+        int grain = Math.max(t.length / (pool.getParallelism() * 4), PARALLEL_MIN_CHUNK);
+        return pool.invoke(new SearchTask(t, p, pi, 0, t.length, grain));
+    }
+
+    /**
+     * Searches the start positions [from, to), halving the range until it is
+     * at most grain long.
+     */
+    private static class SearchTask extends RecursiveTask<List<Integer>> {
+        private static final long serialVersionUID = 1L;
+
+        private final char[] t;
+        private final char[] p;
+        private final int[] pi;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        SearchTask(char[] t, char[] p, int[] pi, int from, int to, int grain) {
+            this.t     = t;
+            this.p     = p;
+            this.pi    = pi;
+            this.from  = from;
+            this.to    = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected List<Integer> compute() {
+            if (to - from <= grain) {
+                List<Integer> res = new ArrayList<Integer>();
+                searchKMP(t, p, pi, from, (int) Math.min((long) to + p.length - 1, t.length), res);
+                return res;
+            }
+            int mid = (from + to) >>> 1;
+            SearchTask right = new SearchTask(t, p, pi, mid, to, grain);
+            right.fork();
+            List<Integer> res = new SearchTask(t, p, pi, from, mid, grain).compute();
+            res.addAll(right.join());
+            return res;
+        }
+    }
+
+    /**
+     * Searches with the method that suits the pattern: Horspool skips ahead by
+     * up to |pattern| characters, which pays off for longer patterns, while
+     * shorter ones are found faster with the first character filter.
+     */
+    public List<Integer> search() {
+        if (pattern.length() >= HORSPOOL_MIN_LENGTH) return searchHorspool();
+        return searchFirstCharFilter();
+    }
+
+    /**
+     * Boyer-Moore-Horspool search. The window is compared right to left, and
+     * then shifted by how far the last character of the window is from the end
+     * of the pattern at its last occurrence. The shift table is indexed by the
+     * low byte of a character, so it stays small for any alphabet. Characters
+     * sharing a low byte share the smallest shift, which is always safe.
+     */
+    public List<Integer> searchHorspool() {
+        List<Integer> res = new ArrayList<Integer>();
+        int n = input.length();
+        int m = pattern.length();
+        if (m == 0) return searchNaive();
+
+        int[] shift = new int[256];
+        Arrays.fill(shift, m);
+        for (int i = 0; i < m - 1; i++) shift[pattern.charAt(i) & 0xFF] = m - 1 - i;
+
+        char last = pattern.charAt(m - 1);
+        int i = 0;
+        while (i <= n - m) {
+            char c = input.charAt(i + m - 1);
+            if (c == last) {
+                int j = m - 2;
+                while (j >= 0 && input.charAt(i + j) == pattern.charAt(j)) j--;
+                if (j < 0) res.add(i + 1);
+            }
+            i += shift[c & 0xFF];
+        }
+
+        return res;
+    }
+
+    /**
+     * Finds candidate positions by the first character of the pattern with
+     * String.indexOf, which the JVM runs as a vectorized intrinsic, and only
+     * compares the rest of the pattern at the candidates.
+     */
+    public List<Integer> searchFirstCharFilter() {
+        List<Integer> res = new ArrayList<Integer>();
+        int m = pattern.length();
+        if (m == 0) return searchNaive();
+
+        char first = pattern.charAt(0);
+        int last = input.length() - m;
+        int i = input.indexOf(first);
+        while (i >= 0 && i <= last) {
+            if (input.regionMatches(i + 1, pattern, 1, m - 1)) res.add(i + 1);
+            i = input.indexOf(first, i + 1);
+        }
 
         return res;
     }
 
-    private int[] constructBorderArray(String str) {
+    /**
+     * Searches for a whole dictionary of patterns in one pass over the input,
+     * with an Aho-Corasick automaton.
+     * @param input the text to search in
+     * @param patterns the non-empty patterns to search for
+     * @return every (pattern index, 1-based position) match
+     */
+    public static List<AhoCorasick.Match> searchAll(String input, List<String> patterns) {
+        return new AhoCorasick(patterns).search(input);
+    }
+
+    static int[] constructBorderArray(String str) {
         char[] x = str.toCharArray();
         int[] border = new int[x.length];
         border[0] = 0;
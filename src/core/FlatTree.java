@@ -0,0 +1,508 @@
+package core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A suffix tree stored as a struct of arrays. Nodes are plain int ids, and
+ * every node stores the edge leading into it from its parent (start index in
+ * the text and length), its parent, its suffix link and, for leaves, its leaf
+ * index. The root is always node 0 and has no parent edge.
+ *
+ * Children are kept in one of two tables chosen by alphabet size: small
+ * alphabets get a dense row of child ids per internal node (constant time
+ * lookup), large alphabets get first-child/next-sibling lists (two ints per
+ * node regardless of alphabet size).
+ *
+ * The text may grow while the tree is built (see Ukkonen). Edges created with
+ * length OPEN then always run to the current end of the text.
+ */
+public class FlatTree {
+
+    public static final int NONE = -1;
+    public static final int ROOT = 0;
+    public static final int OPEN = Integer.MAX_VALUE;
+
+    /** Largest alphabet (including the terminal symbol) stored in dense child rows. */
+    public static final int DENSE_ALPHABET_LIMIT = 8;
+
+    private CharSequence text;
+
+    private int[] edgeStart;
+    private int[] edgeLength;
+    private int[] parent;
+    private int[] suffixLink;
+    private int[] leafIdx;
+    private int size;
+
+    private ChildTable children;
+
+    /**
+     * Creates a tree holding only the root.
+     * @param text the text the edges index into
+     * @param capacity the expected number of nodes (the arrays grow if exceeded)
+     */
+    public FlatTree(CharSequence text, int capacity) {
+        this.text = text;
+        capacity = Math.max(capacity, 1);
+        this.edgeStart  = new int[capacity];
+        this.edgeLength = new int[capacity];
+        this.parent     = new int[capacity];
+        this.suffixLink = new int[capacity];
+        this.leafIdx    = new int[capacity];
+        this.size       = 0;
+
+        // Pick the child table from the alphabet of the text (an empty text, which
+        // is yet to be appended to, has no known alphabet)
+        boolean[] seen = new boolean[Character.MAX_VALUE + 1];
+        int sigma = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (!seen[text.charAt(i)]) {
+                seen[text.charAt(i)] = true;
+                sigma++;
+            }
+        }
+        if (sigma > 0 && sigma <= DENSE_ALPHABET_LIMIT) children = new DenseChildTable(seen, sigma, capacity);
+        else                               children = new SiblingChildTable(capacity);
+
+        newNode(NONE, 0, 0, NONE);
+        suffixLink[ROOT] = ROOT;
+    }
+
+    public CharSequence getText()       { return text; }
+    public int size()                   { return size; }
+    public int getEdgeStart(int n)      { return edgeStart[n]; }
+    public int getParent(int n)         { return parent[n]; }
+    public int getSuffixLink(int n)     { return suffixLink[n]; }
+    public void setSuffixLink(int n, int s) { suffixLink[n] = s; }
+    public int getLeafIdx(int n)        { return leafIdx[n]; }
+    public boolean isLeaf(int n)        { return children.first(n) == NONE; }
+
+    /**
+     * @return the length of the edge leading into node n
+     */
+    public int getEdgeLength(int n) {
+        int length = edgeLength[n];
+        return (length == OPEN) ? text.length() - edgeStart[n] : length;
+    }
+
+    /**
+     * @return the child of node n whose edge starts with c, or NONE
+     */
+    public int getChild(int n, char c)  { return children.get(n, c); }
+
+    /**
+     * @return the first child of node n, or NONE if n is a leaf
+     */
+    public int getFirstChild(int n)     { return children.first(n); }
+
+    /**
+     * @return the next child of n's parent after n, or NONE if n is the last one
+     */
+    public int getNextSibling(int n)    { return children.next(parent[n], n); }
+
+    /**
+     * @return the label of the edge leading into node n
+     */
+    public String getLabel(int n) { return text.subSequence(edgeStart[n], edgeStart[n] + getEdgeLength(n)).toString(); }
+
+    /**
+     * Receives the nodes of a subtree in depth first order.
+     */
+    public interface Visitor {
+        /** Called before the children of n are visited. */
+        void enter(int n, int depth);
+        /** Called after the children of n are visited. */
+        void leave(int n, int depth);
+    }
+
+    /**
+     * Walks a subtree depth first. The walk follows the parent pointers back
+     * up instead of keeping a stack or recursing, so it is safe however deep
+     * the tree is.
+     * @param top the root of the subtree
+     * @param topDepth the depth of top aka. the length of its label
+     * @param visitor receives every node together with its depth
+     */
+    public void walk(int top, int topDepth, Visitor visitor) {
+        int n = top;
+        int depth = topDepth;
+        while (true) {
+            visitor.enter(n, depth);
+            int c = children.first(n);
+            if (c != NONE) {
+                n = c;
+                depth += getEdgeLength(c);
+                continue;
+            }
+
+            // Leave n and every ancestor whose last child it is
+            while (true) {
+                visitor.leave(n, depth);
+                if (n == top) return;
+                depth -= getEdgeLength(n);
+                int s = getNextSibling(n);
+                if (s != NONE) {
+                    n = s;
+                    depth += getEdgeLength(s);
+                    break;
+                }
+                n = parent[n];
+            }
+        }
+    }
+
+    /**
+     * Adds the leaf indices of all leaves in the subtree of a given node to a
+     * list, in depth first order.
+     * @param top the root of the subtree
+     * @param res the list to add the leaf indices to
+     */
+    public void collectLeaves(int top, List<Integer> res) {
+        collectLeaves(top, res, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Adds the leaf indices of the first leaves in the subtree of a given node
+     * to a list, in depth first order. The walk stops once limit leaves are added.
+     * @param top the root of the subtree
+     * @param res the list to add the leaf indices to
+     * @param limit the largest number of leaves to add
+     */
+    public void collectLeaves(int top, List<Integer> res, int limit) {
+        if (limit <= 0) return;
+        int n = top;
+        while (true) {
+            int c = children.first(n);
+            if (c != NONE) {
+                n = c;
+                continue;
+            }
+
+            // n is a leaf, move on to the next subtree
+            res.add(leafIdx[n]);
+            if (--limit == 0) return;
+            while (true) {
+                if (n == top) return;
+                int s = getNextSibling(n);
+                if (s != NONE) {
+                    n = s;
+                    break;
+                }
+                n = parent[n];
+            }
+        }
+    }
+
+    /**
+     * Counts the leaves below every node in one walk of the tree.
+     * @return the number of leaves in the subtree of each node, indexed by node
+     */
+    public int[] countLeaves() {
+        final int[] count = new int[size];
+        walk(ROOT, 0, new Visitor() {
+            public void enter(int n, int depth) {}
+            public void leave(int n, int depth) {
+                if (children.first(n) == NONE) count[n] = 1;
+                if (n != ROOT) count[parent[n]] += count[n];
+            }
+        });
+        return count;
+    }
+
+    /**
+     * Creates a new node and attaches it below a given parent.
+     * @param p the parent node
+     * @param start the starting index of the edge substring
+     * @param length the length of the edge substring, or OPEN
+     * @param leaf the leaf index of the node, or NONE for internal nodes
+     * @return the id of the newly created node
+     */
+    public int addChild(int p, int start, int length, int leaf) {
+        if (start < 0 || length < 0) throw new IllegalArgumentException("Attempt to create edge with negative length (idx="+start+" & length="+length+")");
+
+        int n = newNode(p, start, length, leaf);
+        children.put(p, text.charAt(start), n);
+        return n;
+    }
+
+    /**
+     * Node ids reserved for a subtree that is added later, possibly on another
+     * thread than the rest of the tree.
+     */
+    static final class Block {
+        private final int first;
+        private int next;    // Id of the next node
+        private int nextRow; // Next reserved row of a dense child table
+
+        private Block(int first, int firstRow) {
+            this.first   = first;
+            this.next    = first;
+            this.nextRow = firstRow;
+        }
+    }
+
+    /**
+     * Reserves the ids of a subtree, which is then added with
+     * addChild(Block, ...). Subtrees in different blocks may be added on
+     * different threads at the same time.
+     * @param nodes the number of nodes of the subtree
+     * @param internalNodes the number of them that get children
+     */
+    Block reserve(int nodes, int internalNodes) {
+        if (size + nodes > edgeStart.length) grow(size + nodes);
+        Block block = new Block(size, children.reserve(internalNodes));
+        size += nodes;
+        return block;
+    }
+
+    /**
+     * Creates the next node of a block and attaches it below a given parent.
+     * The parent of the first node is outside the block, and the first node
+     * must be added on the thread that adds that parent's other children. The
+     * parents of all other nodes are in the block.
+     */
+    int addChild(Block block, int p, int start, int length, int leaf) {
+        int n = block.next++;
+        setNode(n, p, start, length, leaf);
+        if (n == block.first) children.put(p, text.charAt(start), n);
+        else                  children.put(p, text.charAt(start), n, block);
+        return n;
+    }
+
+    /**
+     * Splits the edge leading into a node by inserting a new internal node on it.
+     * @param n the node whose parent edge is split
+     * @param offset the offset from the parent node to split the edge
+     * @return the newly created node
+     */
+    public int splitEdge(int n, int offset) {
+        if (offset <= 0 || offset >= getEdgeLength(n)) throw new IllegalArgumentException("Can't split edge "+getLabel(n)+" at offset "+offset);
+
+        // The new node takes over the top part of the edge, and n's place in its parent
+        int p = parent[n];
+        int mid = newNode(p, edgeStart[n], offset, NONE);
+        children.put(p, text.charAt(edgeStart[n]), mid);
+
+        // n keeps the bottom part of the edge
+        edgeStart[n]  += offset;
+        if (edgeLength[n] != OPEN) edgeLength[n] -= offset;
+        parent[n]      = mid;
+        children.put(mid, text.charAt(edgeStart[n]), n);
+
+        return mid;
+    }
+
+    /**
+     * Adds the arrays of the tree and its child table to a footprint report.
+     */
+    void addTo(Footprint f) {
+        int leaves = 0;
+        for (int n = 0; n < size; n++) if (leafIdx[n] != NONE) leaves++;
+        f.setNodes(size, leaves);
+        f.add("edgeStart",  size, Footprint.intArray(edgeStart.length));
+        f.add("edgeLength", size, Footprint.intArray(edgeLength.length));
+        f.add("parent",     size, Footprint.intArray(parent.length));
+        f.add("suffixLink", size, Footprint.intArray(suffixLink.length));
+        f.add("leafIdx",    size, Footprint.intArray(leafIdx.length));
+        children.addTo(f);
+    }
+
+    private int newNode(int p, int start, int length, int leaf) {
+        if (size == edgeStart.length) grow(size + (size >> 1) + 1);
+
+        int n = size++;
+        setNode(n, p, start, length, leaf);
+        return n;
+    }
+
+    private void setNode(int n, int p, int start, int length, int leaf) {
+        edgeStart[n]  = start;
+        edgeLength[n] = length;
+        parent[n]     = p;
+        suffixLink[n] = NONE;
+        leafIdx[n]    = leaf;
+    }
+
+    private void grow(int capacity) {
+        edgeStart  = Arrays.copyOf(edgeStart, capacity);
+        edgeLength = Arrays.copyOf(edgeLength, capacity);
+        parent     = Arrays.copyOf(parent, capacity);
+        suffixLink = Arrays.copyOf(suffixLink, capacity);
+        leafIdx    = Arrays.copyOf(leafIdx, capacity);
+        children.grow(capacity);
+    }
+
+    /**
+     * Maps (node, first character) to a child node.
+     */
+    private abstract class ChildTable {
+        abstract int get(int n, char c);
+        /** Adds child under n, replacing the existing child starting with c if any. */
+        abstract void put(int n, char c, int child);
+        /** Adds child under n, a node of a block, taking room from the block if n needs any. */
+        abstract void put(int n, char c, int child, Block block);
+        /** Reserves room for the children of a number of nodes. @return where the room starts */
+        abstract int reserve(int nodes);
+        abstract int first(int n);
+        abstract int next(int n, int child);
+        abstract void grow(int capacity);
+        abstract void addTo(Footprint f);
+    }
+
+    /**
+     * One row of sigma child ids per internal node. Leaves never get a row.
+     */
+    private class DenseChildTable extends ChildTable {
+        private byte[] rank;
+        private int sigma;
+        private int[] row;   // Row number of each node, or NONE
+        private int[] table; // Child ids, sigma entries per row
+        private int rows;
+
+        DenseChildTable(boolean[] seen, int sigma, int capacity) {
+            this.sigma   = sigma;
+            this.rank    = new byte[Character.MAX_VALUE + 1];
+            Arrays.fill(rank, (byte) NONE);
+            for (int c = 0, r = 0; c < seen.length; c++) {
+                if (seen[c]) rank[c] = (byte) r++;
+            }
+            this.row   = new int[capacity];
+            this.table = new int[Math.max(capacity / 2, 1) * sigma];
+            Arrays.fill(row, NONE);
+        }
+
+        int get(int n, char c) {
+            int r = rank[c];
+            if (r == NONE || row[n] == NONE) return NONE;
+            return table[row[n] * sigma + r];
+        }
+
+        void put(int n, char c, int child) {
+            if (row[n] == NONE) {
+                if ((rows + 1) * sigma > table.length) {
+                    table = Arrays.copyOf(table, table.length + (table.length >> 1) + sigma);
+                }
+                row[n] = rows++;
+                Arrays.fill(table, row[n] * sigma, (row[n] + 1) * sigma, NONE);
+            }
+            table[row[n] * sigma + rank[c]] = child;
+        }
+
+        void put(int n, char c, int child, Block block) {
+            if (row[n] == NONE) {
+                row[n] = block.nextRow++;
+                Arrays.fill(table, row[n] * sigma, (row[n] + 1) * sigma, NONE);
+            }
+            table[row[n] * sigma + rank[c]] = child;
+        }
+
+        int reserve(int nodes) {
+            if ((long) (rows + nodes) * sigma > table.length) {
+                table = Arrays.copyOf(table, Math.max((rows + nodes) * sigma, table.length + (table.length >> 1)));
+            }
+            int first = rows;
+            rows += nodes;
+            return first;
+        }
+
+        int first(int n) {
+            if (row[n] == NONE) return NONE;
+            return scan(row[n] * sigma, 0);
+        }
+
+        int next(int n, int child) {
+            return scan(row[n] * sigma, rank[text.charAt(edgeStart[child])] + 1);
+        }
+
+        private int scan(int base, int r) {
+            for (; r < sigma; r++) {
+                if (table[base + r] != NONE) return table[base + r];
+            }
+            return NONE;
+        }
+
+        void grow(int capacity) {
+            int oldLength = row.length;
+            row = Arrays.copyOf(row, capacity);
+            Arrays.fill(row, oldLength, capacity, NONE);
+        }
+
+        void addTo(Footprint f) {
+            long used = 0;
+            for (int i = 0; i < rows * sigma; i++) if (table[i] != NONE) used++;
+            f.setChildSlots(table.length, used);
+            f.add("childRank",  rank.length,  Footprint.byteArray(rank.length));
+            f.add("childRow",   size,         Footprint.intArray(row.length));
+            f.add("childTable", rows * sigma, Footprint.intArray(table.length));
+        }
+    }
+
+    /**
+     * First-child/next-sibling lists, independent of the alphabet size.
+     */
+    private class SiblingChildTable extends ChildTable {
+        private int[] firstChild;
+        private int[] nextSibling;
+
+        SiblingChildTable(int capacity) {
+            firstChild  = new int[capacity];
+            nextSibling = new int[capacity];
+            Arrays.fill(firstChild, NONE);
+            Arrays.fill(nextSibling, NONE);
+        }
+
+        int get(int n, char c) {
+            for (int child = firstChild[n]; child != NONE; child = nextSibling[child]) {
+                if (text.charAt(edgeStart[child]) == c) return child;
+            }
+            return NONE;
+        }
+
+        void put(int n, char c, int child) {
+            int prev = NONE;
+            for (int cur = firstChild[n]; cur != NONE; prev = cur, cur = nextSibling[cur]) {
+                if (text.charAt(edgeStart[cur]) == c) {
+                    // Splice the new child into the place of the old one
+                    nextSibling[child] = nextSibling[cur];
+                    nextSibling[cur] = NONE;
+                    if (prev == NONE) firstChild[n] = child;
+                    else              nextSibling[prev] = child;
+                    return;
+                }
+            }
+            nextSibling[child] = firstChild[n];
+            firstChild[n] = child;
+        }
+
+        void put(int n, char c, int child, Block block) {
+            put(n, c, child);
+        }
+
+        int reserve(int nodes) {
+            return 0;
+        }
+
+        int first(int n)            { return firstChild[n]; }
+        int next(int n, int child)  { return nextSibling[child]; }
+
+        void addTo(Footprint f) {
+            long used = 0;
+            for (int n = 0; n < size; n++) {
+                if (firstChild[n] != NONE) used++;
+                if (nextSibling[n] != NONE) used++;
+            }
+            f.setChildSlots(firstChild.length + nextSibling.length, used);
+            f.add("firstChild",  size, Footprint.intArray(firstChild.length));
+            f.add("nextSibling", size, Footprint.intArray(nextSibling.length));
+        }
+
+        void grow(int capacity) {
+            int oldLength = firstChild.length;
+            firstChild  = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            Arrays.fill(firstChild, oldLength, capacity, NONE);
+            Arrays.fill(nextSibling, oldLength, capacity, NONE);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The memory taken by a built index: node and edge counts, how full the child
+ * table is, and the bytes of every array, so heaps can be sized for it. For a
+ * MappedIndex, the sections of the mapped file are listed apart from the heap.
+ *
+ * Sizes follow the usual 64-bit HotSpot layout with compressed pointers: an
+ * array takes a 16 byte header plus its elements, rounded up to 8 bytes. The
+ * few small objects around the arrays are not counted.
+ *
+ * estimate predicts the footprint of a full build from a sample of the input,
+ * for every representation an index can be built as.
+ */
+public class Footprint {
+
+    private static final int ARRAY_HEADER = 16;
+
+    /** Default number of characters sampled by estimate. */
+    public static final int DEFAULT_SAMPLE = 1 << 16;
+
+    private final List<String> structures = new ArrayList<String>();
+    private final List<Long> elements = new ArrayList<Long>();
+    private final List<Long> bytes = new ArrayList<Long>();
+    private final List<Boolean> mapped = new ArrayList<Boolean>();
+
+    private int nodes;
+    private int leaves;
+    private long childSlots;     // Child ids the child table has room for
+    private long usedChildSlots; // Child ids actually set
+
+    /**
+     * @return the footprint of a McCreight tree, its text and its query view
+     */
+    public static Footprint of(McCreight mc) {
+        Footprint f = of(mc.getTree());
+        f.add("leafCount", mc.getTree().size(), intArray(mc.getTree().size()));
+        f.addText(mc.getInput());
+        f.addAlphabet(mc.getAlphabet());
+        return f;
+    }
+
+    /**
+     * @return the footprint of a tree built in parallel, and its text
+     */
+    public static Footprint of(ParallelSuffixTree pst) {
+        Footprint f = of(pst.getTree());
+        f.addText(pst.getInput());
+        f.addAlphabet(pst.getAlphabet());
+        return f;
+    }
+
+    /**
+     * @return the footprint of an online tree and the text indexed so far
+     */
+    public static Footprint of(Ukkonen uk) {
+        Footprint f = of(uk.getTree());
+        f.addText(uk.getInput());
+        f.addAlphabet(uk.getAlphabet());
+        return f;
+    }
+
+    /**
+     * @return the footprint of a generalized tree, its text and its document tables
+     */
+    public static Footprint of(GeneralizedSuffixTree gst) {
+        Footprint f = new Footprint();
+        gst.addTo(f);
+        return f;
+    }
+
+    /**
+     * @return the footprint of a suffix array, its LCP arrays and its text
+     */
+    public static Footprint of(SuffixArray sa) {
+        Footprint f = new Footprint();
+        sa.addTo(f);
+        f.addText(sa.getInput());
+        f.addAlphabet(sa.getAlphabet());
+        return f;
+    }
+
+    /**
+     * @return the footprint of a loaded index file: its sections, which are
+     * mapped, and the alphabet, which is on the heap
+     */
+    public static Footprint of(MappedIndex index) {
+        Footprint f = new Footprint();
+        index.addTo(f);
+        f.addAlphabet(index.getAlphabet());
+        return f;
+    }
+
+    /**
+     * @return the footprint of the arrays of a tree, without its text
+     */
+    public static Footprint of(FlatTree tree) {
+        Footprint f = new Footprint();
+        tree.addTo(f);
+        return f;
+    }
+
+    /**
+     * Adds the arrays of a structure.
+     * @param structure the name of the structure
+     * @param count the number of elements
+     * @param size the bytes taken
+     */
+    void add(String structure, long count, long size) {
+        structures.add(structure);
+        elements.add(count);
+        bytes.add(size);
+        mapped.add(false);
+    }
+
+    /**
+     * Adds a section of a mapped file.
+     * @param structure the name of the section
+     * @param count the number of elements
+     * @param size the bytes of the file it takes
+     */
+    void addMapped(String structure, long count, long size) {
+        add(structure, count, size);
+        mapped.set(mapped.size() - 1, true);
+    }
+
+    void setNodes(int nodes, int leaves) {
+        this.nodes  = nodes;
+        this.leaves = leaves;
+    }
+
+    void setChildSlots(long slots, long used) {
+        this.childSlots     = slots;
+        this.usedChildSlots = used;
+    }
+
+    void addText(EncodedText text) {
+        add("text", text.length(), align(ARRAY_HEADER + text.bytes()));
+    }
+
+    void addAlphabet(Alphabet alphabet) {
+        add("alphabet", alphabet.size(), alphabetBytes(alphabet.size()));
+    }
+
+    static long intArray(long length) {
+        return align(ARRAY_HEADER + 4 * length);
+    }
+
+    static long byteArray(long length) {
+        return align(ARRAY_HEADER + length);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /** @return the bytes of an alphabet: a rank per char and a symbol per rank */
+    private static long alphabetBytes(int size) {
+        return align(ARRAY_HEADER + 2L * (Character.MAX_VALUE + 1)) + align(ARRAY_HEADER + 2L * (size + 1));
+    }
+
+    /** @return the bytes of a text of n characters (with the terminator) encoded for an alphabet */
+    private static long textBytes(long n, int sigma) {
+        long chars = n - 1;
+        if (sigma <= 4)   return align(ARRAY_HEADER + 8 * ((chars + 31) >>> 5));
+        if (sigma <= 255) return align(ARRAY_HEADER + chars);
+        return align(ARRAY_HEADER + 2 * chars);
+    }
+
+    public int getNodeCount()     { return nodes; }
+    public int getLeafCount()     { return leaves; }
+    public int getInternalCount() { return nodes - leaves; }
+    public int getEdgeCount()     { return Math.max(nodes - 1, 0); }
+
+    /**
+     * @return the share of the child table's room that holds a child
+     */
+    public double getChildOccupancy() {
+        return (childSlots == 0) ? 0 : (double) usedChildSlots / childSlots;
+    }
+
+    /**
+     * @return the bytes of a structure, or 0 if there is none by that name
+     */
+    public long getBytes(String structure) {
+        int i = structures.indexOf(structure);
+        return (i < 0) ? 0 : bytes.get(i);
+    }
+
+    public long getTotalBytes() {
+        return getHeapBytes() + getMappedBytes();
+    }
+
+    /**
+     * @return the bytes on the heap
+     */
+    public long getHeapBytes() {
+        long total = 0;
+        for (int i = 0; i < bytes.size(); i++) if (!mapped.get(i)) total += bytes.get(i);
+        return total;
+    }
+
+    /**
+     * @return the bytes of mapped files, i.e. the size of the index file of a MappedIndex
+     */
+    public long getMappedBytes() {
+        long total = 0;
+        for (int i = 0; i < bytes.size(); i++) if (mapped.get(i)) total += bytes.get(i);
+        return total;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (nodes > 0) {
+            sb.append(String.format("%d nodes (%d internal, %d leaves), %d edges, child table %.1f%% full (%d of %d slots)%n",
+                    nodes, getInternalCount(), leaves, getEdgeCount(), 100 * getChildOccupancy(), usedChildSlots, childSlots));
+        }
+        for (int i = 0; i < structures.size(); i++) {
+            sb.append(String.format("  %-12s %12d elements %14d bytes%s%n",
+                    structures.get(i), elements.get(i), bytes.get(i), mapped.get(i) ? " mapped" : ""));
+        }
+        sb.append(String.format("  %-12s %36d bytes", "total", getTotalBytes()));
+        return sb.toString();
+    }
+
+    /**
+     * The predicted footprint of one way of indexing an input.
+     */
+    public static class Estimate {
+        public final String representation;
+        public final long bytes;   // Predicted bytes
+        public final boolean heap; // Whether the bytes are on the heap, or in a mapped file
+
+        public Estimate(String representation, long bytes, boolean heap) {
+            this.representation = representation;
+            this.bytes          = bytes;
+            this.heap           = heap;
+        }
+
+        public String toString() {
+            return String.format("%-24s %14d bytes %s", representation, bytes, heap ? "heap" : "mapped file");
+        }
+    }
+
+    /**
+     * Predicts the footprint of indexing an input, sampling DEFAULT_SAMPLE
+     * characters.
+     */
+    public static List<Estimate> estimate(CharSequence input) {
+        return estimate(input, DEFAULT_SAMPLE);
+    }
+
+    /**
+     * Predicts the footprint of indexing an input. The tree arrays are sized
+     * by the input length alone, and the child table by the alphabet, which is
+     * read from the whole input. Only the number of nodes depends on the text
+     * itself, so a tree is built over a prefix of the input, and its nodes per
+     * character are taken to hold for the whole input.
+     * @param input the input to index
+     * @param sampleLength the length of the prefix to build a tree over
+     * @return the predicted bytes of a McCreight tree, a suffix array and an
+     * index file, each with the text and alphabet they keep
+     */
+    public static List<Estimate> estimate(CharSequence input, int sampleLength) {
+        if (sampleLength <= 0) throw new IllegalArgumentException("Sample length must be positive, was "+sampleLength);
+
+        int sigma = Alphabet.of(input).size();
+        long n = input.length() + 1; // With the terminator
+        String sample = input.subSequence(0, Math.min(sampleLength, input.length())).toString();
+        FlatTree sampleTree = new McCreight(sample).getTree();
+        long nodes = Math.round((double) sampleTree.size() / (sample.length() + 1) * n);
+        nodes = Math.max(n, Math.min(nodes, 2 * n)); // A leaf per suffix, and at most as many internal nodes
+        long shared = textBytes(n, sigma) + alphabetBytes(sigma);
+
+        // McCreight allocates room for 2n nodes up front
+        long capacity = 2 * n;
+        long tree = 5 * intArray(capacity);
+        if (sigma + 1 <= FlatTree.DENSE_ALPHABET_LIMIT) {
+            tree += byteArray(Character.MAX_VALUE + 1) + intArray(capacity) + intArray((capacity / 2) * (sigma + 1));
+        } else {
+            tree += 2 * intArray(capacity);
+        }
+        tree += intArray(nodes); // Leaf counts of the query view
+
+        long suffixArray = 4 * intArray(n); // Suffixes, LCP and the LCP of every search range with its midpoint
+
+        long file = IndexFile.HEADER_BYTES + 2L * sigma + ((sigma <= 255) ? n : 2 * n)
+                  + 4 * (5 * nodes + (nodes + 1) + (nodes - 1));
+
+        List<Estimate> res = new ArrayList<Estimate>();
+        res.add(new Estimate("McCreight", tree + shared, true));
+        res.add(new Estimate("SuffixArray", suffixArray + shared, true));
+        res.add(new Estimate("IndexFile", file, false));
+        return res;
+    }
+
+}
@@ -0,0 +1,179 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A read-only query view of a built suffix tree. Queries only read the tree,
+ * the text and the leaf counts, and keep all their state on the stack, so any
+ * number of threads may query one view at the same time.
+ *
+ * Views are made by McCreight.freeze and ParallelSuffixTree.freeze once the
+ * tree is built. The tree must not be changed after that.
+ */
+public class FrozenSuffixTree implements SearchIndex {
+
+    /** Largest number of queries a batch task runs without splitting. */
+    private static final int BATCH_THRESHOLD = 16;
+
+    private final String engine; // Name of the engine that built the tree, for Instrumentation
+    private final Alphabet alphabet;
+    private final EncodedText input;
+    private final FlatTree tree;
+    private final int[] leafCount; // Number of leaves in the subtree of each node
+
+    FrozenSuffixTree(String engine, Alphabet alphabet, EncodedText input, FlatTree tree) {
+        this.engine    = engine;
+        this.alphabet  = alphabet;
+        this.input     = input;
+        this.tree      = tree;
+        this.leafCount = tree.countLeaves();
+    }
+
+    /**
+     * Lists all occurrences of the query string in the original string.
+     * @param query the string to search for
+     * @return a list of all occurrences of the query string in the original string
+     */
+    public List<Integer> search(String query) {
+        return search(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lists the first occurrences of the query string in the original string.
+     * Only the leaves that are returned are visited, so a frequent query is
+     * as cheap as a rare one for a small limit.
+     * @param query the string to search for
+     * @param limit the largest number of occurrences to return
+     * @return the start index of at most limit occurrences of the query string
+     */
+    public List<Integer> search(String query, int limit) {
+        if (limit < 0) throw new IllegalArgumentException("Negative limit "+limit);
+
+        Instrumentation.SearchEvent event = new Instrumentation.SearchEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        List<Integer> res = collect(query, limit);
+        Instrumentation.searchDone(event, start, engine, query.length(), res.size());
+        return res;
+    }
+
+    /**
+     * Lists the first occurrences of the query string, without recording the
+     * search, for callers that record it themselves.
+     */
+    List<Integer> collect(String query, int limit) {
+        List<Integer> res = new ArrayList<Integer>();
+        int top = locate(query);
+        if (top != FlatTree.NONE) tree.collectLeaves(top, res, limit);
+        return res;
+    }
+
+    /**
+     * Counts the occurrences of the query string in the original string. The
+     * count is read off the node where the query ends, so it takes O(|query|)
+     * time however many occurrences there are.
+     * @param query the string to search for
+     * @return the number of occurrences of the query string
+     */
+    public int count(String query) {
+        int top = locate(query);
+        return (top == FlatTree.NONE) ? 0 : leafCount[top];
+    }
+
+    /**
+     * Lists the start positions where the pattern occurs with at most k
+     * differences. Only the paths of the tree within distance k of a prefix of
+     * the pattern are walked, so for small k the cost depends on |pattern|, k
+     * and the number of hits rather than on the length of the text.
+     * @param pattern the string to search for
+     * @param k the largest distance allowed
+     * @param mode Hamming or edit distance
+     * @return every 1-based start position with an occurrence within distance
+     * k, with the smallest distance of an occurrence there
+     */
+    public List<ApproximateSearch.Match> searchApprox(String pattern, int k, ApproximateSearch.Mode mode) {
+        return ApproximateSearch.search(alphabet, input, tree, pattern, k, mode);
+    }
+
+    /**
+     * Searches for a batch of queries on the common fork-join pool.
+     * @param queries the strings to search for
+     * @return the occurrences of each query, in the order of the queries
+     */
+    public List<List<Integer>> searchAll(List<String> queries) {
+        return searchAll(queries, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Searches for a batch of queries, split into tasks on a fork-join pool.
+     * @param queries the strings to search for
+     * @param pool the pool to run the searches on
+     * @return the occurrences of each query, in the order of the queries
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public List<List<Integer>> searchAll(List<String> queries, ForkJoinPool pool) {
+        String[] batch = queries.toArray(new String[queries.size()]);
+        List<Integer>[] results = new List[batch.length];
+        pool.invoke(new SearchTask(batch, results, 0, batch.length));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Searches for the queries in [from, to), halving the range until it is
+     * small enough to run.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] queries;
+        private final List<Integer>[] results;
+        private final int from;
+        private final int to;
+
+        SearchTask(String[] queries, List<Integer>[] results, int from, int to) {
+            this.queries = queries;
+            this.results = results;
+            this.from    = from;
+            this.to      = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                for (int i = from; i < to; i++) results[i] = search(queries[i]);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SearchTask(queries, results, from, mid), new SearchTask(queries, results, mid, to));
+        }
+    }
+
+    /**
+     * Searches character by character for the query from the root.
+     * @return the highest node at or below the end of the query, or NONE if
+     * the query does not occur
+     */
+    private int locate(String query) {
+        // A query with a character not in the input can't occur
+        String find = alphabet.encodeQuery(query);
+        if (find == null) return FlatTree.NONE;
+
+        int node = FlatTree.ROOT;
+        int findCharCount = 0;
+        while (findCharCount < find.length()) {
+            int e = tree.getChild(node, find.charAt(findCharCount));
+            if (e == FlatTree.NONE) return FlatTree.NONE;
+            int matchLength = Math.min(tree.getEdgeLength(e), find.length() - findCharCount);
+            if (!input.regionMatches(tree.getEdgeStart(e), find, findCharCount, matchLength)) return FlatTree.NONE;
+            findCharCount += matchLength;
+            node = e;
+        }
+
+        return node;
+    }
+
+}
@@ -0,0 +1,255 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A suffix tree over a collection of documents. Occurrences are reported as
+ * (document, offset) pairs, and every node knows how many distinct documents
+ * its subtree occurs in.
+ *
+ * The documents are concatenated, each followed by the SEPARATOR symbol, and
+ * built into one McCreight tree. Every document thereby has its own terminator
+ * in the sense that matters here: a path never continues past a separator into
+ * the next document, as patterns containing SEPARATOR are rejected. Only the
+ * encoded text of the tree is kept, and queries are matched against it as
+ * ranks.
+ */
+public class GeneralizedSuffixTree {
+
+    /** Ends every document. A non-character, so it never occurs in real text. */
+    public static final char SEPARATOR = '\uFFFF';
+
+    private Alphabet alphabet;
+    private EncodedText text; // Ranks of the documents and separators, ended by the terminator
+    private FlatTree tree;
+    private int separator;    // Rank of SEPARATOR, or NONE if there are no documents
+    private int[] docStart;   // Index of the first character of each document in the text
+    private int[] docCount;  // Number of distinct documents in the subtree of each node
+
+    public GeneralizedSuffixTree(List<String> documents) {
+        StringBuilder sb = new StringBuilder();
+        docStart = new int[documents.size()];
+        for (int d = 0; d < documents.size(); d++) {
+            String doc = documents.get(d);
+            if (doc.indexOf(SEPARATOR) >= 0) {
+                throw new IllegalArgumentException("Document "+d+" contains a reserved symbol");
+            }
+            docStart[d] = sb.length();
+            sb.append(doc).append(SEPARATOR);
+        }
+
+        McCreight mc = new McCreight(sb.toString());
+        this.tree      = mc.getTree();
+        this.text      = mc.getInput();
+        this.alphabet  = mc.getAlphabet();
+        this.separator = alphabet.rank(SEPARATOR);
+        countDocuments();
+    }
+
+    /**
+     * @return the number of indexed documents
+     */
+    public int getDocumentCount() {
+        return docStart.length;
+    }
+
+    void addTo(Footprint f) {
+        tree.addTo(f);
+        f.addText(text);
+        f.addAlphabet(alphabet);
+        f.add("docStart",  docStart.length, Footprint.intArray(docStart.length));
+        f.add("docCount",  docCount.length, Footprint.intArray(docCount.length));
+    }
+
+    /**
+     * An occurrence of a pattern in one of the documents.
+     */
+    public static class Occurrence {
+        public final int document; // 0-based document id
+        public final int offset;   // 1-based start in the document
+
+        public Occurrence(int document, int offset) {
+            this.document = document;
+            this.offset   = offset;
+        }
+
+        public String toString() { return "(" + document + "," + offset + ")"; }
+
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Occurrence)) return false;
+            Occurrence o = (Occurrence) obj;
+            return document == o.document && offset == o.offset;
+        }
+
+        public int hashCode() { return document * 31 + offset; }
+    }
+
+    /**
+     * Lists all occurrences of the query string in all documents.
+     * @param query the string to search for
+     * @return the (document, offset) pair of every occurrence
+     */
+    public List<Occurrence> search(String query) {
+        Instrumentation.SearchEvent event = new Instrumentation.SearchEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        List<Occurrence> res = new ArrayList<Occurrence>();
+        int top = locate(query);
+        if (top != FlatTree.NONE) {
+            List<Integer> leaves = new ArrayList<Integer>();
+            tree.collectLeaves(top, leaves);
+            for (int leaf : leaves) {
+                int d = documentOf(leaf - 1);
+                if (d != FlatTree.NONE) res.add(new Occurrence(d, leaf - docStart[d]));
+            }
+        }
+        Instrumentation.searchDone(event, start, "GeneralizedSuffixTree", query.length(), res.size());
+        return res;
+    }
+
+    /**
+     * Counts the documents containing the query string, in O(|query|) time.
+     */
+    public int countDocuments(String query) {
+        int top = locate(query);
+        return (top == FlatTree.NONE) ? 0 : docCount[top];
+    }
+
+    /**
+     * Lists the documents containing the query string. The leaves below the
+     * query are only visited until the known number of documents is found.
+     * @param query the string to search for
+     * @return the ids of the documents containing the query, in no particular order
+     */
+    public List<Integer> documentsContaining(String query) {
+        List<Integer> res = new ArrayList<Integer>();
+        int top = locate(query);
+        if (top == FlatTree.NONE) return res;
+
+        BitSet seen = new BitSet(docStart.length);
+        int n = top;
+        while (res.size() < docCount[top]) {
+            if (tree.isLeaf(n)) {
+                int d = documentOf(tree.getLeafIdx(n) - 1);
+                if (d != FlatTree.NONE && !seen.get(d)) {
+                    seen.set(d);
+                    res.add(d);
+                }
+                n = nextInPreorder(n, top);
+            } else {
+                n = tree.getFirstChild(n);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * @return the node following the subtree of n in a pre-order walk of the
+     * subtree of top, or NONE when the walk is done
+     */
+    private int nextInPreorder(int n, int top) {
+        while (n != top) {
+            int s = tree.getNextSibling(n);
+            if (s != FlatTree.NONE) return s;
+            n = tree.getParent(n);
+        }
+        return FlatTree.NONE;
+    }
+
+    /**
+     * Finds the highest node at or below the end of the query string.
+     * @return the node, or NONE if the query does not occur
+     */
+    private int locate(String query) {
+        // A query with a separator or a character not in the documents can't occur
+        if (query.indexOf(SEPARATOR) >= 0) return FlatTree.NONE;
+        String ranks = alphabet.encodeQuery(query);
+        if (ranks == null) return FlatTree.NONE;
+
+        int node = FlatTree.ROOT;
+        int findCharCount = 0;
+        while (findCharCount < ranks.length()) {
+            node = tree.getChild(node, ranks.charAt(findCharCount));
+            if (node == FlatTree.NONE) return FlatTree.NONE;
+            int matchLength = Math.min(tree.getEdgeLength(node), ranks.length() - findCharCount);
+            if (!text.regionMatches(tree.getEdgeStart(node), ranks, findCharCount, matchLength)) return FlatTree.NONE;
+            findCharCount += matchLength;
+        }
+        return node;
+    }
+
+    /**
+     * @return the document holding the character at an index of the text, or
+     * NONE if it is a separator or the terminator
+     */
+    private int documentOf(int idx) {
+        int r = text.charAt(idx);
+        if (r == Alphabet.TERMINATOR || r == separator) return FlatTree.NONE;
+        int d = Arrays.binarySearch(docStart, idx);
+        return (d >= 0) ? d : -d - 2;
+    }
+
+    /**
+     * Computes the number of distinct documents below every node. Each leaf
+     * counts one, and for every two consecutive leaves (in DFS order) from the
+     * same document, the count of their lowest common ancestor is reduced by one.
+     * The lowest common ancestors are found with Tarjan's offline algorithm
+     * during a single post-order walk.
+     */
+    private void countDocuments() {
+        int size = tree.size();
+        docCount = new int[size];
+        int[] ancestor = new int[size]; // Union-find forest, closed nodes point towards their parent
+        for (int i = 0; i < size; i++) ancestor[i] = i;
+        int[] lastLeaf = new int[docStart.length];
+        Arrays.fill(lastLeaf, FlatTree.NONE);
+
+        // Stack free post-order walk using the parent pointers
+        int n = FlatTree.ROOT;
+        while (true) {
+            int c = tree.getFirstChild(n);
+            if (c != FlatTree.NONE) {
+                n = c;
+                continue;
+            }
+
+            // n is a leaf
+            int d = documentOf(tree.getLeafIdx(n) - 1);
+            if (d != FlatTree.NONE) {
+                docCount[n]++;
+                if (lastLeaf[d] != FlatTree.NONE) docCount[find(ancestor, lastLeaf[d])]--;
+                lastLeaf[d] = n;
+            }
+
+            // Close n and every ancestor whose last child it is
+            while (true) {
+                if (n == FlatTree.ROOT) return;
+                int p = tree.getParent(n);
+                docCount[p] += docCount[n];
+                ancestor[n] = p;
+                int s = tree.getNextSibling(n);
+                if (s != FlatTree.NONE) {
+                    n = s;
+                    break;
+                }
+                n = p;
+            }
+        }
+    }
+
+    private static int find(int[] ancestor, int n) {
+        int root = n;
+        while (ancestor[root] != root) root = ancestor[root];
+        while (ancestor[n] != root) {
+            int next = ancestor[n];
+            ancestor[n] = root;
+            n = next;
+        }
+        return root;
+    }
+
+}
@@ -0,0 +1,104 @@
+package core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The binary file format of a built suffix tree, so a tree can be built once
+ * and loaded by later runs. All values are big-endian:
+ *
+ *   int    MAGIC
+ *   int    VERSION
+ *   int    text length n (including the terminator)
+ *   int    node count m
+ *   int    alphabet size s
+ *   char   symbols[s]        the characters of ranks 1..s
+ *   byte   text[n]           the ranks of the text, as chars if s > 255
+ *   int    edgeStart[m]
+ *   int    edgeLength[m]
+ *   int    parent[m]
+ *   int    suffixLink[m]
+ *   int    leafIdx[m]
+ *   int    childOffset[m+1]  the children of node v are children[childOffset[v] .. childOffset[v+1]-1]
+ *   int    children[m-1]     sorted by the first character of their edge
+ *
+ * Node 0 is the root. Files are read back by MappedIndex.
+ */
+public class IndexFile {
+
+    public static final int MAGIC   = 0x53544958; // "STIX"
+    public static final int VERSION = 2;
+    public static final int HEADER_BYTES = 20;
+
+    /**
+     * Writes a suffix tree and its text to a file.
+     * @param tree a tree built over a text encoded with the alphabet
+     * @param alphabet the alphabet of the text
+     * @param file the file to write to
+     */
+    public static void write(final FlatTree tree, Alphabet alphabet, File file) throws IOException {
+        CharSequence text = tree.getText();
+        int m = tree.size();
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(text.length());
+            out.writeInt(m);
+            out.writeInt(alphabet.size());
+
+            for (int r = 1; r <= alphabet.size(); r++) out.writeChar(alphabet.symbol(r));
+            if (alphabet.size() <= 255) {
+                for (int i = 0; i < text.length(); i++) out.writeByte(text.charAt(i));
+            } else {
+                for (int i = 0; i < text.length(); i++) out.writeChar(text.charAt(i));
+            }
+            for (int v = 0; v < m; v++) out.writeInt(tree.getEdgeStart(v));
+            for (int v = 0; v < m; v++) out.writeInt(tree.getEdgeLength(v));
+            for (int v = 0; v < m; v++) out.writeInt(tree.getParent(v));
+            for (int v = 0; v < m; v++) out.writeInt(tree.getSuffixLink(v));
+            for (int v = 0; v < m; v++) out.writeInt(tree.getLeafIdx(v));
+
+            int offset = 0;
+            for (int v = 0; v < m; v++) {
+                out.writeInt(offset);
+                for (int c = tree.getFirstChild(v); c != FlatTree.NONE; c = tree.getNextSibling(c)) offset++;
+            }
+            out.writeInt(offset);
+
+            // Sibling lists are in insertion order, so the children are sorted here
+            final CharSequence t = text;
+            Comparator<Integer> byFirstChar = new Comparator<Integer>() {
+                @Override
+                public int compare(Integer c1, Integer c2) {
+                    return t.charAt(tree.getEdgeStart(c1)) - t.charAt(tree.getEdgeStart(c2));
+                }
+            };
+            List<Integer> children = new ArrayList<Integer>();
+            for (int v = 0; v < m; v++) {
+                children.clear();
+                for (int c = tree.getFirstChild(v); c != FlatTree.NONE; c = tree.getNextSibling(c)) children.add(c);
+                Collections.sort(children, byFirstChar);
+                for (int c : children) out.writeInt(c);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Maps an index file written by write.
+     */
+    public static MappedIndex load(File file) throws IOException {
+        return new MappedIndex(file);
+    }
+
+}
@@ -0,0 +1,254 @@
+package core;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Counters and JFR events for suffix tree construction, search and tandem
+ * repeat finding, to check that the work stays linear on real inputs and to
+ * spot the inputs where it doesn't.
+ *
+ * Every index records its construction and its searches: McCreight,
+ * ParallelSuffixTree and SuffixArray when they are built, Ukkonen when finish()
+ * ends the text, and the search of all of them, of MappedIndex and of
+ * GeneralizedSuffixTree (whose tree is a McCreight build). The events name the
+ * engine. Only McCreight counts fastscan hops and slowscan comparisons, and
+ * only McCreight and Ukkonen split edges.
+ *
+ * The counters are off unless the JVM runs with -Dcore.instrumentation=true.
+ * ENABLED is a constant, so when it is false the JIT removes every counter
+ * update guarded by it. The JFR events are committed whenever a recording has
+ * them enabled, e.g. with
+ *   java -XX:StartFlightRecording=filename=rec.jfr ...
+ * and cost next to nothing otherwise.
+ */
+public final class Instrumentation {
+
+    /** Whether the counters are kept. */
+    public static final boolean ENABLED = Boolean.getBoolean("core.instrumentation");
+
+    // Indices of the counters
+    private static final int BUILDS               = 0;
+    private static final int BUILD_CHARS          = 1;
+    private static final int BUILD_NANOS          = 2;
+    private static final int NODES                = 3;
+    private static final int FASTSCAN_HOPS        = 4;
+    private static final int SLOWSCAN_COMPARISONS = 5;
+    private static final int EDGE_SPLITS          = 6;
+    private static final int SEARCHES             = 7;
+    private static final int SEARCH_CHARS         = 8;
+    private static final int SEARCH_HITS          = 9;
+    private static final int SEARCH_NANOS         = 10;
+    private static final int TANDEM_RUNS          = 11;
+    private static final int TANDEM_CHARS         = 12;
+    private static final int TANDEM_REPEATS       = 13;
+    private static final int TANDEM_NANOS         = 14;
+    private static final int COUNTERS             = 15;
+
+    private static final LongAdder[] counters = new LongAdder[COUNTERS];
+    static {
+        for (int i = 0; i < COUNTERS; i++) counters[i] = new LongAdder();
+    }
+
+    private Instrumentation() {}
+
+    /**
+     * @return the current value of every counter. The counters are read one
+     * at a time, so a snapshot taken while work is going on may be off by the
+     * work in progress.
+     */
+    public static Snapshot snapshot() {
+        long[] values = new long[COUNTERS];
+        for (int i = 0; i < COUNTERS; i++) values[i] = counters[i].sum();
+        return new Snapshot(values);
+    }
+
+    /**
+     * Sets all counters to zero.
+     */
+    public static void reset() {
+        for (LongAdder counter : counters) counter.reset();
+    }
+
+    /**
+     * The counters at one point in time.
+     */
+    public static class Snapshot {
+        public final long builds;              // Suffix trees and arrays built
+        public final long buildChars;          // Characters of their inputs
+        public final long buildNanos;          // Time spent building them
+        public final long nodes;               // Nodes created, leaves included, none for suffix arrays
+        public final long fastscanHops;        // Edges skipped by McCreight's fastscan
+        public final long slowscanComparisons; // Characters compared by McCreight's slowscan
+        public final long edgeSplits;          // Edges split by an internal node
+        public final long searches;            // Searches
+        public final long searchChars;         // Characters of the queries
+        public final long searchHits;          // Occurrences returned
+        public final long searchNanos;         // Time spent searching
+        public final long tandemRuns;          // Tandem repeat searches
+        public final long tandemChars;         // Characters of their inputs
+        public final long tandemRepeats;       // Tandem repeats found
+        public final long tandemNanos;         // Time spent finding them
+
+        private Snapshot(long[] v) {
+            builds              = v[BUILDS];
+            buildChars          = v[BUILD_CHARS];
+            buildNanos          = v[BUILD_NANOS];
+            nodes               = v[NODES];
+            fastscanHops        = v[FASTSCAN_HOPS];
+            slowscanComparisons = v[SLOWSCAN_COMPARISONS];
+            edgeSplits          = v[EDGE_SPLITS];
+            searches            = v[SEARCHES];
+            searchChars         = v[SEARCH_CHARS];
+            searchHits          = v[SEARCH_HITS];
+            searchNanos         = v[SEARCH_NANOS];
+            tandemRuns          = v[TANDEM_RUNS];
+            tandemChars         = v[TANDEM_CHARS];
+            tandemRepeats       = v[TANDEM_REPEATS];
+            tandemNanos         = v[TANDEM_NANOS];
+        }
+
+        /**
+         * @return the fastscan hops and slowscan comparisons per input
+         * character, which McCreight's algorithm keeps below a small constant.
+         * The characters of the other engines' builds count too.
+         */
+        public double buildStepsPerChar() {
+            return (buildChars == 0) ? 0 : (double) (fastscanHops + slowscanComparisons) / buildChars;
+        }
+
+        public String toString() {
+            return String.format("build: %d trees, %d chars, %d ms, %d nodes, %d hops, %d comparisons, %d splits (%.2f steps/char)%n" +
+                                 "search: %d queries, %d chars, %d hits, %d ms%n" +
+                                 "tandem repeats: %d runs, %d chars, %d repeats, %d ms",
+                    builds, buildChars, buildNanos / 1000000, nodes, fastscanHops, slowscanComparisons, edgeSplits, buildStepsPerChar(),
+                    searches, searchChars, searchHits, searchNanos / 1000000,
+                    tandemRuns, tandemChars, tandemRepeats, tandemNanos / 1000000);
+        }
+    }
+
+    /**
+     * @return the current time if the counters are kept, for the phase ending
+     * methods to measure from
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a finished construction. The engines other than McCreight pass
+     * zero for the steps they don't take.
+     */
+    static void buildDone(BuildEvent event, long start, String engine, int inputLength, int nodes, long hops, long comparisons, long splits) {
+        if (ENABLED) {
+            counters[BUILDS].increment();
+            counters[BUILD_CHARS].add(inputLength);
+            counters[BUILD_NANOS].add(System.nanoTime() - start);
+            counters[NODES].add(nodes);
+            counters[FASTSCAN_HOPS].add(hops);
+            counters[SLOWSCAN_COMPARISONS].add(comparisons);
+            counters[EDGE_SPLITS].add(splits);
+        }
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.inputLength = inputLength;
+            event.nodes = nodes;
+            event.fastscanHops = hops;
+            event.slowscanComparisons = comparisons;
+            event.edgeSplits = splits;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a finished search.
+     */
+    static void searchDone(SearchEvent event, long start, String engine, int patternLength, int hits) {
+        if (ENABLED) {
+            counters[SEARCHES].increment();
+            counters[SEARCH_CHARS].add(patternLength);
+            counters[SEARCH_HITS].add(hits);
+            counters[SEARCH_NANOS].add(System.nanoTime() - start);
+        }
+        if (event.shouldCommit()) {
+            event.engine = engine;
+            event.patternLength = patternLength;
+            event.hits = hits;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records a finished tandem repeat search.
+     */
+    static void tandemRepeatsDone(TandemRepeatEvent event, long start, int inputLength, long repeats) {
+        if (ENABLED) {
+            counters[TANDEM_RUNS].increment();
+            counters[TANDEM_CHARS].add(inputLength);
+            counters[TANDEM_REPEATS].add(repeats);
+            counters[TANDEM_NANOS].add(System.nanoTime() - start);
+        }
+        if (event.shouldCommit()) {
+            event.inputLength = inputLength;
+            event.repeats = repeats;
+            event.commit();
+        }
+    }
+
+    @Name("core.Build")
+    @Label("Suffix Tree Build")
+    @Category("Suffix Trees")
+    @Description("Construction of a suffix tree or suffix array")
+    static class BuildEvent extends Event {
+        @Label("Engine")
+        String engine;
+
+        @Label("Input Length")
+        int inputLength;
+
+        @Label("Nodes")
+        int nodes;
+
+        @Label("Fastscan Hops")
+        long fastscanHops;
+
+        @Label("Slowscan Comparisons")
+        long slowscanComparisons;
+
+        @Label("Edge Splits")
+        long edgeSplits;
+    }
+
+    @Name("core.Search")
+    @Label("Suffix Tree Search")
+    @Category("Suffix Trees")
+    @Description("Search for all occurrences of a pattern")
+    static class SearchEvent extends Event {
+        @Label("Engine")
+        String engine;
+
+        @Label("Pattern Length")
+        int patternLength;
+
+        @Label("Hits")
+        int hits;
+    }
+
+    @Name("core.TandemRepeats")
+    @Label("Tandem Repeats")
+    @Category("Suffix Trees")
+    @Description("Search for all tandem repeats of a string")
+    static class TandemRepeatEvent extends Event {
+        @Label("Input Length")
+        int inputLength;
+
+        @Label("Repeats")
+        long repeats;
+    }
+
+}
@@ -0,0 +1,224 @@
+package core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A suffix tree loaded from an IndexFile. The file is memory mapped and queries
+ * read straight from the mapped buffers, so loading costs nothing but page
+ * faults on the parts of the tree a query touches. Sections larger than a
+ * single mapping allows are mapped in several chunks.
+ *
+ * The index is read-only, and queries may run concurrently.
+ */
+public class MappedIndex implements SearchIndex, Closeable {
+
+    private static final int CHUNK_SHIFT = 28; // 2^28 values per mapped chunk
+    private static final int CHUNK_MASK  = (1 << CHUNK_SHIFT) - 1;
+
+    private RandomAccessFile file;
+    private int textLength;
+    private int nodeCount;
+    private Alphabet alphabet;
+
+    private ByteBuffer[] textBytes; // The ranks of the text for alphabets of up to 255 characters
+    private CharBuffer[] textChars; // and otherwise
+    private IntBuffer[] edgeStart;
+    private IntBuffer[] edgeLength;
+    private IntBuffer[] parent;
+    private IntBuffer[] suffixLink;
+    private IntBuffer[] leafIdx;
+    private IntBuffer[] childOffset;
+    private IntBuffer[] children;
+
+    public MappedIndex(File f) throws IOException {
+        this.file = new RandomAccessFile(f, "r");
+        FileChannel channel = file.getChannel();
+        if (channel.size() < IndexFile.HEADER_BYTES) throw new IOException(f + " is not an index file");
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, IndexFile.HEADER_BYTES);
+        if (header.getInt() != IndexFile.MAGIC) throw new IOException(f + " is not an index file");
+        int version = header.getInt();
+        if (version != IndexFile.VERSION) throw new IOException("Unsupported index file version " + version);
+        this.textLength = header.getInt();
+        this.nodeCount  = header.getInt();
+        int alphabetSize = header.getInt();
+
+        long pos = IndexFile.HEADER_BYTES;
+        CharBuffer symbols = channel.map(FileChannel.MapMode.READ_ONLY, pos, 2L * alphabetSize).asCharBuffer();
+        pos += 2L * alphabetSize;
+        alphabet = new Alphabet();
+        for (int r = 1; r <= alphabetSize; r++) alphabet.add(symbols.get());
+
+        if (alphabetSize <= 255) {
+            textBytes = mapBytes(channel, pos, textLength); pos += textLength;
+        } else {
+            textChars = mapChars(channel, pos, textLength); pos += 2L * textLength;
+        }
+        edgeStart   = mapInts(channel, pos, nodeCount);    pos += 4L * nodeCount;
+        edgeLength  = mapInts(channel, pos, nodeCount);    pos += 4L * nodeCount;
+        parent      = mapInts(channel, pos, nodeCount);    pos += 4L * nodeCount;
+        suffixLink  = mapInts(channel, pos, nodeCount);    pos += 4L * nodeCount;
+        leafIdx     = mapInts(channel, pos, nodeCount);    pos += 4L * nodeCount;
+        childOffset = mapInts(channel, pos, nodeCount + 1); pos += 4L * (nodeCount + 1);
+        children    = mapInts(channel, pos, nodeCount - 1); pos += 4L * (nodeCount - 1);
+        if (pos != channel.size()) throw new IOException(f + " is truncated or corrupt");
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    public Alphabet getAlphabet() { return alphabet; }
+    public int getTextLength() { return textLength; }
+    public int size()          { return nodeCount; }
+    public int getParent(int n)     { return get(parent, n); }
+    public int getSuffixLink(int n) { return get(suffixLink, n); }
+    public int getLeafIdx(int n)    { return get(leafIdx, n); }
+
+    /**
+     * Adds the sections of the file. Counting the leaves reads all of leafIdx.
+     */
+    void addTo(Footprint f) {
+        int leaves = 0;
+        for (int n = 0; n < nodeCount; n++) if (getLeafIdx(n) != FlatTree.NONE) leaves++;
+        f.setNodes(nodeCount, leaves);
+        f.setChildSlots(nodeCount - 1, nodeCount - 1);
+        f.addMapped("header",      alphabet.size(), IndexFile.HEADER_BYTES + 2L * alphabet.size());
+        f.addMapped("text",        textLength,      (textBytes != null) ? textLength : 2L * textLength);
+        f.addMapped("edgeStart",   nodeCount,       4L * nodeCount);
+        f.addMapped("edgeLength",  nodeCount,       4L * nodeCount);
+        f.addMapped("parent",      nodeCount,       4L * nodeCount);
+        f.addMapped("suffixLink",  nodeCount,       4L * nodeCount);
+        f.addMapped("leafIdx",     nodeCount,       4L * nodeCount);
+        f.addMapped("childOffset", nodeCount + 1,   4L * (nodeCount + 1));
+        f.addMapped("children",    nodeCount - 1,   4L * (nodeCount - 1));
+    }
+
+    /**
+     * Lists all occurrences of the query string in the original string.
+     * @param query the string to search for
+     * @return a list of all occurrences of the query string in the original string
+     */
+    public List<Integer> search(String query) {
+        Instrumentation.SearchEvent event = new Instrumentation.SearchEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        List<Integer> res = collect(query);
+        Instrumentation.searchDone(event, start, "MappedIndex", query.length(), res.size());
+        return res;
+    }
+
+    /**
+     * Lists all occurrences of the query string, for search to record.
+     */
+    private List<Integer> collect(String query) {
+        List<Integer> res = new ArrayList<Integer>();
+
+        // A query with a character not in the text can't occur
+        query = alphabet.encodeQuery(query);
+        if (query == null) return res;
+
+        // Search as far down the tree as possible
+        int node = FlatTree.ROOT;
+        int findCharCount = 0;
+        while (findCharCount < query.length()) {
+            node = getChild(node, query.charAt(findCharCount));
+            if (node == FlatTree.NONE) return res;
+            int idx = get(edgeStart, node);
+            int matchLength = Math.min(get(edgeLength, node), query.length() - findCharCount);
+            for (int i = 0; i < matchLength; i++) {
+                if (charAt(idx + i) != query.charAt(findCharCount + i)) return res;
+            }
+            findCharCount += matchLength;
+        }
+
+        // List the leaves below, using an explicit stack of nodes
+        int[] stack = new int[16];
+        int top = 0;
+        stack[0] = node;
+        while (top >= 0) {
+            int n = stack[top--];
+            int from = get(childOffset, n);
+            int to   = get(childOffset, n + 1);
+            if (from == to) {
+                res.add(get(leafIdx, n));
+                continue;
+            }
+            for (int i = to - 1; i >= from; i--) {
+                if (top + 1 == stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+                stack[++top] = get(children, i);
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Binary searches the children of a node for the one starting with c.
+     */
+    private int getChild(int n, char c) {
+        int lo = get(childOffset, n);
+        int hi = get(childOffset, n + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int child = get(children, mid);
+            char first = charAt(get(edgeStart, child));
+            if (first == c) return child;
+            if (first < c) lo = mid + 1;
+            else           hi = mid - 1;
+        }
+        return FlatTree.NONE;
+    }
+
+    private char charAt(int i) {
+        if (textBytes != null) return (char) (textBytes[i >>> CHUNK_SHIFT].get(i & CHUNK_MASK) & 0xFF);
+        return textChars[i >>> CHUNK_SHIFT].get(i & CHUNK_MASK);
+    }
+
+    private static int get(IntBuffer[] section, int i) {
+        return section[i >>> CHUNK_SHIFT].get(i & CHUNK_MASK);
+    }
+
+    private static IntBuffer[] mapInts(FileChannel channel, long pos, int count) throws IOException {
+        IntBuffer[] chunks = new IntBuffer[chunkCount(count)];
+        for (int i = 0; i < chunks.length; i++) {
+            long size = Math.min(count - ((long) i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos + 4L * ((long) i << CHUNK_SHIFT), 4L * size).asIntBuffer();
+        }
+        return chunks;
+    }
+
+    private static ByteBuffer[] mapBytes(FileChannel channel, long pos, int count) throws IOException {
+        ByteBuffer[] chunks = new ByteBuffer[chunkCount(count)];
+        for (int i = 0; i < chunks.length; i++) {
+            long size = Math.min(count - ((long) i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos + ((long) i << CHUNK_SHIFT), size);
+        }
+        return chunks;
+    }
+
+    private static CharBuffer[] mapChars(FileChannel channel, long pos, int count) throws IOException {
+        CharBuffer[] chunks = new CharBuffer[chunkCount(count)];
+        for (int i = 0; i < chunks.length; i++) {
+            long size = Math.min(count - ((long) i << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos + 2L * ((long) i << CHUNK_SHIFT), 2L * size).asCharBuffer();
+        }
+        return chunks;
+    }
+
+    private static int chunkCount(int count) {
+        return Math.max((int) (((long) count + CHUNK_MASK) >>> CHUNK_SHIFT), 1);
+    }
+
+}
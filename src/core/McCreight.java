@@ -1,81 +1,90 @@
 package core;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
-public class McCreight {
+public class McCreight implements SearchIndex {
 
-    public static char TERM_SYMBOL = '$';
+    private Alphabet alphabet;
+    private EncodedText input;
+    private FlatTree tree;
+    private FrozenSuffixTree view;
+    private volatile SearchCache cache; // Null unless enabled
+    private int root;
 
-    private String input;
-    private Node root;
+    // State of the construction, not used once the tree is built
     private int depthTrack;
+    private boolean fastscanSplit;
+
+    // Work done by the construction, counted if Instrumentation.ENABLED
+    private long fastscanHops;
+    private long slowscanComparisons;
+    private long edgeSplits;
 
     public McCreight(String input) {
         this.depthTrack = 0;
-        this.input = input + TERM_SYMBOL;
+        this.alphabet = Alphabet.of(input);
+        this.input = alphabet.encode(input);
+
+        Instrumentation.BuildEvent event = new Instrumentation.BuildEvent();
+        event.begin();
+        long start = Instrumentation.start();
         constructSuffixTree();
+        Instrumentation.buildDone(event, start, "McCreight", this.input.length(), tree.size(), fastscanHops, slowscanComparisons, edgeSplits);
+        this.view = new FrozenSuffixTree("McCreight", alphabet, this.input, tree);
     }
 
     public void findTandemRepeats() {
 //        new TandemRepeat(input, root);
-        System.err.println(new TandemRepeat(input, root));
+        TandemRepeat.Printer printer = new TandemRepeat.Printer(System.err);
+        TandemRepeat.find(input, tree, printer);
+        printer.finish();
     }
 
     /**
-     * Checks for two strings if one is a prefix of the other, or in
-     * case they are of equal length, if they are equal. The parameters
-     * are interchangeable.
-     * @return true if one string is a prefix of the other, false otherwise
+     * Streams the maximal repeats of the input of at least a given length.
+     * @param minLength the shortest repeat to report
+     * @param sink receives the 0-based start of one occurrence, the length and
+     * the number of occurrences of every maximal repeat
      */
-    private boolean checkPrefixMatch(String s1, String s2) {
-        for (int i= 0; i < Math.min(s1.length(), s2.length()); i++) {
-            if (s1.charAt(i) != s2.charAt(i)) return false;
-        }
-        return true;
+    public void findMaximalRepeats(int minLength, Repeats.Sink sink) {
+        Repeats.maximalRepeats(input, tree, minLength, sink);
     }
 
     /**
-     * Search character by character for a string starting at a given node.
-     * @param node the node in which we start the search
-     * @param find the string to search for
-     * @return if the search ends in a node, this is returned. If the search
-     * ends on an edge, the node it ends in is returned.
+     * @return {0-based start of one occurrence, length} of a longest substring
+     * occurring at least twice, or null if there is none
      */
-    private Node slowscanNoCreate(Node node, String find) {
-        int findCharCount = 0;
-
-        while (findCharCount < find.length()) {
-            Edge e = node.getEdge(find.charAt(findCharCount));
-            if (e == null || !checkPrefixMatch(e.getLabel(), find.substring(findCharCount))) return null;
-            findCharCount += e.getLength();
-            node = e.getTo();
-        }
-
-        return node;
+    public int[] longestRepeatedSubstring() {
+        return Repeats.longestRepeatedSubstring(tree);
     }
 
     /**
-     * Builds a list of all leaves in the subtree of a given node.
-     * @param n the root of the subtree which we want to list
-     * @return a list of the leaves in the subtree rooted at the given node
+     * @return the array backed tree built over the input
      */
-    private List<Integer> listAllIndicesOfSubtree(Node n) {
-        List<Integer> res = new ArrayList<Integer>();
+    public FlatTree getTree() {
+        return tree;
+    }
 
-        // If node is a leaf, return its index
-        if (n.getAllEdges().isEmpty()) {
-            res.add(n.leafIdx);
-            return res;
-        }
+    /**
+     * @return the alphabet the input is encoded with
+     */
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
 
-        // Else, recurse on all children
-        for (Edge e : n.getAllEdges()) {
-            res.addAll(listAllIndicesOfSubtree(e.getTo()));
-        }
+    /**
+     * @return the encoded input, ended by the terminator
+     */
+    public EncodedText getInput() {
+        return input;
+    }
 
-        return res;
+    /**
+     * @return a read-only view of the tree that queries may share between threads
+     */
+    public FrozenSuffixTree freeze() {
+        return view;
     }
 
     /**
@@ -84,18 +93,77 @@ public class McCreight {
      * @return a list of all occurrences of the query string in the original string
      */
     public List<Integer> search(String query) {
-        // Serach as far down the tree as possible
-        Node top = slowscanNoCreate(root, query);
+        SearchCache c = cache;
+        if (c == null) return view.search(query);
+
+        // The cache searches the view without recording it, so every search is recorded once, hit or miss
+        Instrumentation.SearchEvent event = new Instrumentation.SearchEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        List<Integer> res = c.search(query);
+        Instrumentation.searchDone(event, start, "McCreight", query.length(), res.size());
+        return res;
+    }
 
-        // The string was not found
-        if (top == null) return new ArrayList<Integer>();
+    /**
+     * Caches the results of search from now on, keeping the most recently used
+     * results of up to maxOccurrences occurrences in all.
+     * @return the cache, e.g. for its statistics
+     */
+    public SearchCache enableCache(long maxOccurrences) {
+        cache = new SearchCache(new SearchIndex() {
+            public List<Integer> search(String query) {
+                return view.collect(query, Integer.MAX_VALUE);
+            }
+        }, maxOccurrences);
+        return cache;
+    }
 
-        // List the start index of all terminal nodes in the subtree rooted at top
-        return listAllIndicesOfSubtree(top);
+    /**
+     * Lists the first occurrences of the query string in the original string.
+     * @param query the string to search for
+     * @param limit the largest number of occurrences to return
+     * @return the start index of at most limit occurrences of the query string
+     */
+    public List<Integer> search(String query, int limit) {
+        return view.search(query, limit);
+    }
+
+    /**
+     * Lists the start positions where the pattern occurs with at most k
+     * differences, under Hamming or edit distance.
+     * @param pattern the string to search for
+     * @param k the largest distance allowed
+     * @param mode Hamming or edit distance
+     * @return every 1-based start position with an occurrence within distance
+     * k, with the smallest distance of an occurrence there
+     */
+    public List<ApproximateSearch.Match> searchApprox(String pattern, int k, ApproximateSearch.Mode mode) {
+        return view.searchApprox(pattern, k, mode);
+    }
+
+    /**
+     * Counts the occurrences of the query string in O(|query|) time.
+     * @param query the string to search for
+     * @return the number of occurrences of the query string
+     */
+    public int count(String query) {
+        return view.count(query);
     }
 
     /**
-     * Constructs the suffix tree.
+     * Searches for a batch of queries in parallel.
+     * @param queries the strings to search for
+     * @return the occurrences of each query, in the order of the queries
+     */
+    public List<List<Integer>> searchAll(List<String> queries) {
+        return view.searchAll(queries);
+    }
+
+    /**
+     * Constructs the suffix tree. Every string the construction works on is a
+     * substring of the input, so it is passed around as a start index and a
+     * length, and nothing but tree nodes is allocated inside the loop.
      */
     private void constructSuffixTree() {
 //        DotMaker dot = null;
@@ -106,27 +174,25 @@ public class McCreight {
          * creating the root node, and an edge to a new leaf node representing the
          * entire string.
          */
-        root = new Node();
-        Node n1 = new Node(1);
-        makeEdge(root, n1, 0, input.length());
-        root.setSuffixLink(root);
+        tree = new FlatTree(input, 2 * input.length());
+        root = FlatTree.ROOT;
+        tree.addChild(root, 0, input.length(), 1);
 
         /*
          * We will iteratively add smaller and smaller suffixes of the input string
          * to the suffix tree. We start from input[1:n] and end with the empty string.
          *
          * Head represents the last node on the path to the most recently inserted
-         * string, and is therefore initialized to root.
-         *
-         * Tail is a string containing the label of the edge from head to newest leaf.
+         * string, and is therefore initialized to root. depthTrack is the length of
+         * the string spelled out by head.
          *
-         * This construction means that the concatenation of head and tail will spell
-         * out the most recently inserted suffix.
+         * The tail, i.e. the label of the edge from head to the newest leaf, is the
+         * rest of the most recently inserted suffix, so it is never stored. For
+         * suffix i+1 it starts at (i+1) + depthTrack.
          */
-        Node head   = root;
-        String tail = input;
+        int head = root;
         for (int i = 0; i < input.length() - 1; i++) {
-//            dot.addTree(root);
+//            dot.addTree(tree, alphabet);
 
             /*
              * We initialize the variables u and v. They are constructed in such a
@@ -136,17 +202,19 @@ public class McCreight {
              * u is set to the parent of head, and in case head is the root, u is
              * simply set to the root.
              *
-             * v is the label of the edge going from u to head. Again, if head is
-             * the root, v is just the empty string.
+             * v is the label of the edge going from u to head, given by vIdx and
+             * vLength. Again, if head is the root, v is just the empty string.
              */
-            Node u; String v;
+            int u, vIdx, vLength;
             if (head == root) {
                 u = root;
-                v = "";
+                vIdx = 0;
+                vLength = 0;
             } else {
-                u = head.getParent();
-                v = head.getParentEdge().getLabel();
-                depthTrack -= head.getParentEdge().getLabel().length(); // We go to heads parent
+                u = tree.getParent(head);
+                vIdx = tree.getEdgeStart(head);
+                vLength = tree.getEdgeLength(head);
+                depthTrack -= vLength; // We go to heads parent
             }
 
             /*
@@ -159,22 +227,23 @@ public class McCreight {
              *
              * If u is the root, we will fastscan from the root (which is also equal to
              * s(u)) for v[1:]. Of course v can be the empty string (it is in the first
-             * iteration), we have to check for that too as we can't take the substring.
+             * iteration), we have to check for that too as we can't drop its first
+             * character.
              *
              * We set w to to be the node where the search ends. If the search completes
-             * on an edge, a new node is created. We also need to store this information,
-             * which is why w is stored in a 'NodeAndNewFlag' variable.
+             * on an edge, a new node is created, which fastscan reports in fastscanSplit.
              */
-            NodeAndNewFlag w;
+            int w;
+            fastscanSplit = false;
             if (u != root) {
-                depthTrack += v.length() - 1; // We go to the suffix link
-                w = fastscan(u.getSuffixLink(), v);
+                depthTrack += vLength - 1; // We go to the suffix link
+                w = fastscan(tree.getSuffixLink(u), vIdx, vLength);
             } else {
-                if (v.isEmpty()) {
-                    w = new NodeAndNewFlag(u, false);
+                if (vLength == 0) {
+                    w = u;
                 } else {
-                    depthTrack += v.length() - 1;
-                    w = fastscan(root, v.substring(1));
+                    depthTrack += vLength - 1;
+                    w = fastscan(root, vIdx + 1, vLength - 1);
                 }
             }
 
@@ -187,170 +256,100 @@ public class McCreight {
              * If, however, w was already a node in the tree, it can be the case that
              * more of the suffix is already present in the tree. Because we do not
              * know this for a fact, we will have to use slowscan starting at node w.
-             * The string we are going to search for is tail, as s(u)v concatenated with
-             * tail is equal to the entire suffix we are trying to insert (unless head
-             * is the root (and v therefore is empty), we have to scan for the entire
-             * suffix that we want to insert. This is a special case as u and v act
-             * weird when head is the root).
+             * As s(u)v spells out the first depthTrack characters of the suffix we are
+             * inserting, the search continues from index (i+1) + depthTrack. (When head
+             * is the root, v is empty, depthTrack is 0 and we search for the entire
+             * suffix).
              * This search can, again, either end in a node or on an edge. If it ends in
              * a node, this will be the new head, and nothing else happens. If it ends
              * on an edge, the edge is split by a new node, which will also be the new
              * head.
              */
-            Node newHead;
-            if (w.isNew) newHead = w.n;
-            else newHead = createNodeIfNecessary(slowscan(w.n, (v.isEmpty()) ? input.substring(i+1) : tail));
+            int newHead;
+            if (fastscanSplit) newHead = w;
+            else newHead = slowscan(w, (i+1) + depthTrack);
 
             /*
              * Now that we have found/created the node corresponding to s(u)v, we can
              * update the suffix link of the old head to point to this node.
              */
-            head.setSuffixLink(w.n);
+            tree.setSuffixLink(head, w);
 
             /*
              * We now have to insert the leaf node corresponding to the suffix we are
              * inserting. To connect it to the tree, we create an edge from newHead,
-             * and its label will be newTail (which is the rest of the suffix from
-             * newHead).
+             * and its label will be the rest of the suffix from newHead.
              */
-            String newTail = input.substring((i+1) + depthTrack, input.length());
-            Node terminalNode = new Node(i+2);
-            makeEdge(newHead, terminalNode, (i+1) + depthTrack, newTail.length());
+            int newTailIdx = (i+1) + depthTrack;
+            tree.addChild(newHead, newTailIdx, input.length() - newTailIdx, i+2);
 
             /*
-             * Finally we will update head and tail.
+             * Finally we will update head.
              */
             head = newHead;
-            tail = newTail;
         }
 
-//        dot.addTree(root);
+//        dot.addTree(tree, alphabet);
 //        try { dot.close(); } catch (IOException e) {System.exit(-1);}
     }
 
     /**
-     * Creates a new node at on a given edge at a given offset if the offset
-     * is not zero, as the node already exists in this case.
-     * @param nao a node and offset pair. The offset is on the parent edge.
-     * @return the newly created node, or the given node if none was created
-     */
-    private Node createNodeIfNecessary(NodeAndOffset nao) {
-        if (nao.offset == 0) return nao.node;
-        else return splitEdge(nao.node.getParentEdge(), nao.offset);
-    }
-
-    /**
-     * We know that the string find is in the tree.
+     * Searches for input[idx, idx+length] from a given node, skipping from node
+     * to node by edge lengths. We know that the string is in the tree. If the
+     * search ends on an edge, the edge is split and fastscanSplit is set.
+     * @param start the node in which we start the search
+     * @param idx the index in the input of the string to search for
+     * @param length the length of the string to search for
+     * @return the node spelling out the string
      */
-    private NodeAndNewFlag fastscan(Node start, String find) {
+    private int fastscan(int start, int idx, int length) {
         // Edge case (search for the empty string)
-        if (find.equals("")) return new NodeAndNewFlag(start, false);
+        if (length == 0) return start;
 
         // Regular case
         int searchDist = 0;
-        Node curNode = start;
-        Edge e;
+        int curNode = start;
         do {
-            e = curNode.getEdge(find.charAt(searchDist));
-            searchDist += e.getLength();
-            curNode = e.getTo();
-        } while (find.length() > searchDist);
-
-        if (searchDist == find.length()) {
-            return new NodeAndNewFlag(curNode, false);
-        } else {
-            // Search ended on an edge. Split edge by inserting a new node.
-            Node newNode = splitEdge(e, e.getLength() - (searchDist - find.length()));
-            return new NodeAndNewFlag(newNode, true);
-        }
+            curNode = tree.getChild(curNode, input.charAt(idx + searchDist));
+            searchDist += tree.getEdgeLength(curNode);
+            if (Instrumentation.ENABLED) fastscanHops++;
+        } while (length > searchDist);
+
+        if (searchDist == length) return curNode;
+
+        // Search ended on an edge. Split edge by inserting a new node.
+        fastscanSplit = true;
+        if (Instrumentation.ENABLED) edgeSplits++;
+        return tree.splitEdge(curNode, tree.getEdgeLength(curNode) - (searchDist - length));
     }
 
     /**
-     * We do not know if the string find is in the tree or not.
+     * Searches character by character for the suffix of the input starting at
+     * a given index. We do not know how much of it is in the tree. If the search
+     * ends on an edge, the edge is split.
+     * @param start the node in which we start the search
+     * @param idx the index in the input of the suffix to search for
+     * @return the node where the search ended
      */
-    private NodeAndOffset slowscan(Node start, String find) {
-        Node curNode = start;
-        int findCharCount = 0;
+    private int slowscan(int start, int idx) {
+        int curNode = start;
 
         while (true) {
-            Edge e = curNode.getEdge(find.charAt(findCharCount));
-            if (e == null) return new NodeAndOffset(curNode,0);
-            for (int i = 0; i < e.getLength(); i++) {
-                if (findCharCount == find.length() || input.charAt(e.getIdx() + i) != find.charAt(findCharCount)) {
+            int e = tree.getChild(curNode, input.charAt(idx));
+            if (e == FlatTree.NONE) return curNode;
+            int edgeIdx = tree.getEdgeStart(e);
+            int edgeLength = tree.getEdgeLength(e);
+            for (int i = 0; i < edgeLength; i++) {
+                if (Instrumentation.ENABLED) slowscanComparisons++;
+                if (input.charAt(edgeIdx + i) != input.charAt(idx)) {
                     // Break this edge
-                    return new NodeAndOffset(e.getTo(), i);
+                    if (Instrumentation.ENABLED) edgeSplits++;
+                    return tree.splitEdge(e, i);
                 }
-                findCharCount++;
+                idx++;
                 depthTrack++;
             }
-            curNode = e.getTo();
-        }
-    }
-
-    /**
-     * Creates an edge between two nodes
-     * @param n1 the parent node
-     * @param n2 the child node
-     * @param idx the starting index of the edge substring
-     * @param length the length of the edge substring
-     * @return the newly created edge
-     */
-    private Edge makeEdge(Node n1, Node n2, int idx, int length) {
-        Edge e = new Edge(input, n1, n2, idx, length);
-        n1.addEdge(input.charAt(idx), e);
-        n2.setParentEdge(e);
-        return e;
-    }
-
-    /**
-     * Splits an edge by creating a new node and inserting it on the edge.
-     * @param e the edge to split
-     * @param offset the offset from the parent node to split the edge
-     * @return the newly created node
-     */
-    private Node splitEdge(Edge e, int offset) {
-        if (offset <= 0 || offset >= e.getLength()) throw new IllegalArgumentException("Can't split edge "+e.getLabel()+" at offset "+offset);
-
-        // Prepare nodes
-        Node n1 = e.getFrom();
-        Node n3 = e.getTo();
-        Node n2 = new Node();
-
-        // Insert new edge between n2 and n3
-        makeEdge(n2, n3, e.getIdx() + offset, e.getLength() - offset);
-
-        // Shorten edge (from and idx does not change)
-        n2.setParentEdge(e);
-        e.setTo(n2);
-        e.setLength(offset);
-
-        // Return newly created node
-        return n2;
-    }
-
-    /**
-     * Private class to use as return value from slowscan.
-     */
-    private class NodeAndOffset {
-        public Node node;
-        public int offset;
-        public NodeAndOffset(Node n, int o) {
-            node = n;
-            offset = o;
-        }
-    }
-
-    /**
-     * Private class to use as return value from fastscan.
-     */
-    // TODO make fastscan use NodeAndOffset
-    private class NodeAndNewFlag {
-        public Node n;
-        public boolean isNew;
-
-        private NodeAndNewFlag(Node n, boolean isNew) {
-            this.n = n;
-            this.isNew = isNew;
+            curNode = e;
         }
     }
 
@@ -0,0 +1,400 @@
+package core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Suffix array and LCP array construction on a fork-join pool, for
+ * ParallelSuffixTree.
+ *
+ * Suffixes are sorted with a difference cover sample (Karkkainen, Sanders and
+ * Burkhardt): COVER is a set of residues mod V such that for any i and j there
+ * is a k < V with both i+k and j+k in the sample, i.e. with a residue in
+ * COVER. Once the sample suffixes are ranked, any two suffixes compare by at
+ * most k characters and then the ranks of i+k and j+k. The sample itself is
+ * ranked by its first V characters, and only if those are not unique, by
+ * SA-IS over the names of the blocks of V characters, which is a string of
+ * under a quarter of the input's length.
+ *
+ * Both sorts put the positions into buckets by their first q characters and
+ * then sort every bucket with a merge sort, all of it split over the pool.
+ * The LCP array is Kasai's algorithm run on a range of text positions per
+ * task. Each task starts from an LCP of 0, so it does up to the longest
+ * common prefix in extra work.
+ *
+ * A bucket is sorted by a single merge sort whose halves are sorted in
+ * parallel but whose merges are not, so texts where most suffixes share their
+ * first q characters, such as long runs of one character, scale less well.
+ */
+final class ParallelSuffixSort {
+
+    private static final int V = 64;
+    private static final int[] COVER = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 16, 24, 32, 40, 48, 56 };
+    private static final int[] COVER_INDEX = new int[V]; // Index of each residue in COVER, or NONE
+    private static final int[] DELTA = new int[V * V];   // Smallest k with i+k and j+k in the sample, by i and j mod V
+
+    /** Largest number of buckets the positions are counted into. */
+    private static final int MAX_BUCKETS = 1 << 16;
+
+    /** Chunks of work to aim for per thread. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private static final int INSERTION_SORT_LENGTH = 16;
+
+    static {
+        Arrays.fill(COVER_INDEX, FlatTree.NONE);
+        for (int c = 0; c < COVER.length; c++) COVER_INDEX[COVER[c]] = c;
+        for (int i = 0; i < V; i++) {
+            for (int j = 0; j < V; j++) {
+                int k = 0;
+                while (COVER_INDEX[(i + k) % V] == FlatTree.NONE || COVER_INDEX[(j + k) % V] == FlatTree.NONE) k++;
+                DELTA[i * V + j] = k;
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final int[] s; // The text, as ranks ending with the unique terminator 0
+    private final int n;
+    private final int upper;
+    private final int q;       // Characters the positions are bucketed by
+    private final int buckets; // Number of distinct q character prefixes, padded with 0
+    private final int chunks;  // Chunks to split a pass over n positions into
+    private final int grain;   // Positions a sorting task handles without forking
+
+    private int[] sampleRank; // Rank of every sample suffix among the sample, by sampleIndex
+
+    /**
+     * @param text the text to sort, ending with the terminator
+     * @param upper the largest rank in the text
+     * @param pool the pool to work on
+     */
+    ParallelSuffixSort(final CharSequence text, int upper, ForkJoinPool pool) {
+        this.pool  = pool;
+        this.n     = text.length();
+        this.upper = upper;
+        this.s     = new int[n];
+        this.chunks = Math.max(Math.min(n, pool.getParallelism() * CHUNKS_PER_THREAD), 1);
+        this.grain  = Math.max(n / chunks, INSERTION_SORT_LENGTH);
+
+        // Few buckets for short texts, so counting them doesn't dominate
+        int length = 1;
+        long count = upper + 1;
+        while (length < V && count * (upper + 1) <= Math.min(MAX_BUCKETS, n)) {
+            count *= upper + 1;
+            length++;
+        }
+        this.q       = length;
+        this.buckets = (int) count;
+
+        forEach(chunks, new Chunk() {
+            public void run(int c) {
+                for (int i = from(c, n), end = from(c + 1, n); i < end; i++) s[i] = text.charAt(i);
+            }
+        });
+    }
+
+    /**
+     * @return the suffix array of the text
+     */
+    int[] suffixArray() {
+        rankSample();
+        int[] all = new int[n];
+        for (int i = 0; i < n; i++) all[i] = i;
+        int[] sa = sort(all, new Order() {
+            int compare(int i, int j) {
+                int k = DELTA[(i % V) * V + (j % V)];
+                for (int d = q; d < k; d++) {
+                    if (s[i + d] != s[j + d]) return (s[i + d] < s[j + d]) ? -1 : 1;
+                }
+                return (sampleRank[sampleIndex(i + k)] < sampleRank[sampleIndex(j + k)]) ? -1 : 1;
+            }
+        });
+        sampleRank = null;
+        return sa;
+    }
+
+    /**
+     * Builds the LCP array with Kasai's algorithm, a range of text positions
+     * per task.
+     */
+    int[] lcp(final int[] sa) {
+        final int[] rank = new int[n];
+        forEach(chunks, new Chunk() {
+            public void run(int c) {
+                for (int r = from(c, n), end = from(c + 1, n); r < end; r++) rank[sa[r]] = r;
+            }
+        });
+
+        final int[] lcp = new int[n];
+        forEach(chunks, new Chunk() {
+            public void run(int c) {
+                int h = 0;
+                for (int i = from(c, n), end = from(c + 1, n); i < end; i++) {
+                    if (rank[i] == 0) {
+                        h = 0;
+                        continue;
+                    }
+                    int j = sa[rank[i] - 1];
+                    while (i + h < n && j + h < n && s[i + h] == s[j + h]) h++;
+                    lcp[rank[i]] = h;
+                    if (h > 0) h--;
+                }
+            }
+        });
+        return lcp;
+    }
+
+    /**
+     * Ranks the sample suffixes, first by their blocks of V characters, and
+     * where those repeat, by sorting the suffixes of the string of block
+     * names. That string holds the names of the sample positions of each
+     * residue in COVER in turn, in text order. The last block of each residue
+     * holds the terminator, so its name is unique and two suffixes of the
+     * string never compare past the end of their residue.
+     */
+    private void rankSample() {
+        int blocks = (n + V - 1) / V;
+        int[] sample = new int[blocks * COVER.length];
+        int m = 0;
+        for (int c = 0; c < COVER.length; c++) {
+            for (int p = COVER[c]; p < n; p += V) sample[m++] = p;
+        }
+        final int[] sorted = sort(Arrays.copyOf(sample, m), new Order() {
+            int compare(int i, int j) {
+                for (int d = q; d < V; d++) {
+                    if (s[i + d] != s[j + d]) return (s[i + d] < s[j + d]) ? -1 : 1;
+                }
+                return 0;
+            }
+        });
+
+        // Name the blocks by their rank, equal blocks getting the same name
+        final int[] name = new int[m];
+        final int count = m;
+        forEach(chunks, new Chunk() {
+            public void run(int c) {
+                for (int r = Math.max(from(c, count), 1), end = from(c + 1, count); r < end; r++) {
+                    name[r] = sameBlock(sorted[r - 1], sorted[r]) ? 0 : 1;
+                }
+            }
+        });
+        for (int r = 1; r < m; r++) name[r] += name[r - 1];
+
+        sampleRank = new int[blocks * COVER.length];
+        if (m == 0 || name[m - 1] == m - 1) {
+            for (int r = 0; r < m; r++) sampleRank[sampleIndex(sorted[r])] = r;
+            return;
+        }
+
+        // The positions of sample are in the order of the string of names
+        int[] classStart = new int[COVER.length];
+        for (int c = 1, x = 0; c < COVER.length; c++) {
+            while (x < m && sample[x] % V == COVER[c - 1]) x++;
+            classStart[c] = x;
+        }
+        int[] names = new int[m];
+        for (int r = 0; r < m; r++) {
+            int p = sorted[r];
+            names[classStart[COVER_INDEX[p % V]] + p / V] = name[r];
+        }
+        int[] order = SuffixArray.sais(names, name[m - 1]);
+        for (int r = 0; r < m; r++) sampleRank[sampleIndex(sample[order[r]])] = r;
+    }
+
+    private boolean sameBlock(int i, int j) {
+        for (int d = 0; d < V; d++) {
+            if (s[i + d] != s[j + d]) return false;
+        }
+        return true;
+    }
+
+    private static int sampleIndex(int p) {
+        return (p / V) * COVER.length + COVER_INDEX[p % V];
+    }
+
+    /**
+     * Sorts positions by their first q characters with a counting sort, then
+     * every bucket of positions sharing those with a merge sort.
+     * @param pos the positions to sort
+     * @param order compares two positions whose first q characters are equal.
+     * Ranks past the end of the text count as 0, but a position never needs
+     * them, because it reaches the unique terminator first.
+     * @return the sorted positions
+     */
+    private int[] sort(final int[] pos, final Order order) {
+        final int m = pos.length;
+        final int[] key = new int[m];
+        final int[][] count = new int[chunks][];
+        forEach(chunks, new Chunk() {
+            public void run(int c) {
+                int[] cnt = new int[buckets];
+                for (int i = from(c, m), end = from(c + 1, m); i < end; i++) {
+                    int p = pos[i], k = 0;
+                    for (int d = 0; d < q; d++) k = k * (upper + 1) + ((p + d < n) ? s[p + d] : 0);
+                    key[i] = k;
+                    cnt[k]++;
+                }
+                count[c] = cnt;
+            }
+        });
+
+        // Turn the counts into the offsets every chunk writes its positions from
+        final int[] bucketStart = new int[buckets + 1];
+        for (int b = 0, sum = 0; b < buckets; b++) {
+            bucketStart[b] = sum;
+            for (int c = 0; c < chunks; c++) {
+                int cnt = count[c][b];
+                count[c][b] = sum;
+                sum += cnt;
+            }
+        }
+        bucketStart[buckets] = m;
+
+        final int[] res = new int[m];
+        forEach(chunks, new Chunk() {
+            public void run(int c) {
+                int[] next = count[c];
+                for (int i = from(c, m), end = from(c + 1, m); i < end; i++) res[next[key[i]]++] = pos[i];
+            }
+        });
+
+        // Group the buckets into units of about grain positions, each sorted by one task
+        int[] units = new int[buckets + 1];
+        int unitCount = 0;
+        for (int b = 0; b < buckets; b++) {
+            if (bucketStart[b] == bucketStart[b + 1]) continue;
+            if (unitCount == 0 || bucketStart[b] - bucketStart[units[unitCount - 1]] >= grain) units[unitCount++] = b;
+        }
+        units[unitCount] = buckets;
+        final int[] unit = units;
+        final int[] tmp = new int[m];
+        forEach(unitCount, new Chunk() {
+            public void run(int u) {
+                for (int b = unit[u]; b < unit[u + 1]; b++) {
+                    if (bucketStart[b + 1] - bucketStart[b] > 1) {
+                        new MergeSort(res, tmp, bucketStart[b], bucketStart[b + 1], order).invoke();
+                    }
+                }
+            }
+        });
+        return res;
+    }
+
+    /**
+     * @return the start of chunk c when splitting length items into chunks
+     */
+    private int from(int c, int length) {
+        return (int) ((long) length * c / chunks);
+    }
+
+    /**
+     * Runs count chunks of work on the pool and waits for them.
+     */
+    private void forEach(int count, Chunk chunk) {
+        if (count > 0) pool.invoke(new ChunkTask(chunk, 0, count));
+    }
+
+    /**
+     * A chunk of the work of a pass.
+     */
+    private interface Chunk {
+        void run(int c);
+    }
+
+    /**
+     * An order of text positions.
+     */
+    private abstract static class Order {
+        abstract int compare(int i, int j);
+    }
+
+    /**
+     * Runs the chunks in [from, to), halving the range down to single chunks.
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+
+        ChunkTask(Chunk chunk, int from, int to) {
+            this.chunk = chunk;
+            this.from  = from;
+            this.to    = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                chunk.run(from);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(chunk, from, mid), new ChunkTask(chunk, mid, to));
+        }
+    }
+
+    /**
+     * Sorts a[from, to) with a merge sort through tmp[from, to), sorting the
+     * halves of ranges longer than grain in parallel.
+     */
+    private class MergeSort extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] a;
+        private final int[] tmp;
+        private final int from;
+        private final int to;
+        private final Order order;
+
+        MergeSort(int[] a, int[] tmp, int from, int to, Order order) {
+            this.a     = a;
+            this.tmp   = tmp;
+            this.from  = from;
+            this.to    = to;
+            this.order = order;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                sort(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new MergeSort(a, tmp, from, mid, order), new MergeSort(a, tmp, mid, to, order));
+            merge(from, mid, to);
+        }
+
+        private void sort(int lo, int hi) {
+            if (hi - lo <= INSERTION_SORT_LENGTH) {
+                for (int i = lo + 1; i < hi; i++) {
+                    int v = a[i], j = i - 1;
+                    while (j >= lo && order.compare(a[j], v) > 0) {
+                        a[j + 1] = a[j];
+                        j--;
+                    }
+                    a[j + 1] = v;
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            sort(lo, mid);
+            sort(mid, hi);
+            merge(lo, mid, hi);
+        }
+
+        private void merge(int lo, int mid, int hi) {
+            if (order.compare(a[mid - 1], a[mid]) <= 0) return; // Already in order
+            System.arraycopy(a, lo, tmp, lo, hi - lo);
+            int i = lo, j = mid, k = lo;
+            while (i < mid && j < hi) a[k++] = (order.compare(tmp[j], tmp[i]) < 0) ? tmp[j++] : tmp[i++];
+            while (i < mid) a[k++] = tmp[i++];
+            while (j < hi)  a[k++] = tmp[j++];
+        }
+    }
+
+}
@@ -0,0 +1,452 @@
+package core;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A suffix tree built on several cores. The suffixes are sorted into a suffix
+ * array, which is split into buckets of suffixes sharing their first q
+ * characters. Every bucket becomes an independent subtree, and the buckets are
+ * built in parallel on a fork-join pool. The nodes shallower than q are then
+ * built over the buckets, and the subtrees are copied under them into one
+ * FlatTree, one bucket per task, each into a block of node ids reserved for
+ * it. Suffix links are filled in afterwards, again one bucket per task.
+ *
+ * The suffix and LCP arrays are built with ParallelSuffixSort on the same
+ * pool, or with SA-IS and Kasai's algorithm if the pool has a single thread,
+ * as those are faster on one core. What is left sequential is encoding the
+ * input, allocating the tree, the nodes above the buckets and ranking the
+ * suffix sample when its blocks repeat, which took about a tenth of a single
+ * threaded build of 5M random characters.
+ *
+ * Subtrees are built from the suffix array and the LCP array: the suffixes are
+ * added in sorted order, and the LCP with the previous suffix tells where on
+ * the rightmost path of the subtree the new leaf branches off.
+ *
+ * The resulting tree is the same as the one McCreight builds, and it is
+ * queried the same way.
+ */
+public class ParallelSuffixTree implements SearchIndex {
+
+    /** Longest prefix the buckets are split by. */
+    private static final int MAX_PREFIX_LENGTH = 8;
+
+    /** Buckets to aim for per thread, so that uneven buckets still balance. */
+    private static final int BUCKETS_PER_THREAD = 8;
+
+    private Alphabet alphabet;
+    private EncodedText input;
+    private FlatTree tree;
+    private FrozenSuffixTree view;
+    private ForkJoinPool pool;
+
+    // State of the construction, not used once the tree is built
+    private int[] sa;
+    private int[] lcp;
+    private int[] bucketStart;  // Rank of the first suffix of each bucket, and the number of suffixes last
+    private Subtree[] subtrees; // Subtree of each bucket, or null if the bucket is a single suffix
+    private int[] bucketRoot;   // Node of each bucket in the tree, or NONE if the bucket is a single leaf
+    private FlatTree.Block[] blocks; // Node ids reserved for each bucket subtree
+    private int[] topNodes;     // Internal nodes above the buckets, in pre-order
+    private int topNodeCount;
+
+    public ParallelSuffixTree(String input) {
+        this(input, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param input the string to index
+     * @param pool the pool the subtrees are built on
+     */
+    public ParallelSuffixTree(String input, ForkJoinPool pool) {
+        this.alphabet = Alphabet.of(input);
+        this.input = alphabet.encode(input);
+        this.pool = pool;
+
+        Instrumentation.BuildEvent event = new Instrumentation.BuildEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        constructSuffixTree();
+        Instrumentation.buildDone(event, start, "ParallelSuffixTree", this.input.length(), tree.size(), 0, 0, 0);
+        this.view = new FrozenSuffixTree("ParallelSuffixTree", alphabet, this.input, tree);
+    }
+
+    /**
+     * @return the array backed tree built over the input
+     */
+    public FlatTree getTree() {
+        return tree;
+    }
+
+    /**
+     * @return the alphabet the input is encoded with
+     */
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * @return the encoded input, ended by the terminator
+     */
+    public EncodedText getInput() {
+        return input;
+    }
+
+    /**
+     * @return a read-only view of the tree that queries may share between threads
+     */
+    public FrozenSuffixTree freeze() {
+        return view;
+    }
+
+    /**
+     * Lists all occurrences of the query string in the original string.
+     * @param query the string to search for
+     * @return a list of all occurrences of the query string in the original string
+     */
+    public List<Integer> search(String query) {
+        return view.search(query);
+    }
+
+    /**
+     * Constructs the suffix tree in four steps: sort the suffixes, build the
+     * bucket subtrees in parallel, join them under the nodes above the buckets
+     * and fill in the suffix links in parallel.
+     */
+    private void constructSuffixTree() {
+        int n = input.length();
+        if (pool.getParallelism() == 1) {
+            int[] s = new int[n];
+            for (int i = 0; i < n; i++) s[i] = input.charAt(i);
+            sa  = SuffixArray.sais(s, alphabet.size());
+            lcp = SuffixArray.kasai(input, sa);
+        } else {
+            ParallelSuffixSort sorter = new ParallelSuffixSort(input, alphabet.size(), pool);
+            sa  = sorter.suffixArray();
+            lcp = sorter.lcp(sa);
+        }
+
+        // A new bucket starts wherever a suffix differs from the previous one
+        // in its first q characters
+        int q = prefixLength(alphabet.size() + 1, pool.getParallelism());
+        int buckets = 0;
+        bucketStart = new int[n + 1];
+        for (int r = 0; r < n; r++) {
+            if (r == 0 || lcp[r] < q) bucketStart[buckets++] = r;
+        }
+        bucketStart[buckets] = n;
+        bucketStart = Arrays.copyOf(bucketStart, buckets + 1);
+
+        subtrees = new Subtree[buckets];
+        int grain = Math.max(n / (pool.getParallelism() * BUCKETS_PER_THREAD), 1);
+        pool.invoke(new BucketTask(BUILD, 0, buckets, grain));
+
+        // The nodes above the buckets, built with the buckets as leaves
+        Subtree top = new Subtree(0, 0, 2 * buckets);
+        for (int b = 0; b < buckets; b++) {
+            int r = bucketStart[b];
+            int depth = (subtrees[b] == null) ? n - sa[r] : subtrees[b].depth[Subtree.ROOT];
+            top.add(b, sa[r], depth, (b == 0) ? 0 : lcp[r]);
+        }
+
+        tree = new FlatTree(input, 2 * n);
+        bucketRoot = new int[buckets];
+        Arrays.fill(bucketRoot, FlatTree.NONE);
+        blocks = new FlatTree.Block[buckets];
+        topNodes = new int[top.size];
+        topNodeCount = 0;
+        copy(top, FlatTree.ROOT, null);
+        pool.invoke(new BucketTask(COPY, 0, buckets, grain));
+
+        // The suffix link of a node is found from the suffix link of its parent,
+        // so the nodes above the buckets go first
+        for (int i = 0; i < topNodeCount; i++) tree.setSuffixLink(topNodes[i], findSuffixLink(topNodes[i]));
+        pool.invoke(new BucketTask(LINK, 0, buckets, grain));
+
+        sa = null;
+        lcp = null;
+        bucketStart = null;
+        subtrees = null;
+        bucketRoot = null;
+        blocks = null;
+        topNodes = null;
+    }
+
+    /**
+     * @return the shortest prefix length giving enough buckets to keep every
+     * thread busy, if the text is varied enough
+     */
+    private static int prefixLength(int sigma, int threads) {
+        long wanted = (long) threads * BUCKETS_PER_THREAD;
+        int q = 1;
+        long buckets = sigma;
+        while (buckets < wanted && q < MAX_PREFIX_LENGTH) {
+            buckets *= sigma;
+            q++;
+        }
+        return q;
+    }
+
+    /**
+     * Builds the subtree of the suffixes in bucket b.
+     */
+    private void buildBucket(int b) {
+        int lb = bucketStart[b];
+        int rb = bucketStart[b + 1] - 1;
+        if (lb == rb) return; // A single suffix is just a leaf
+
+        int rootDepth = lcp[lb + 1];
+        for (int r = lb + 2; r <= rb; r++) rootDepth = Math.min(rootDepth, lcp[r]);
+
+        Subtree t = new Subtree(sa[lb], rootDepth, 2 * (rb - lb + 1));
+        for (int r = lb; r <= rb; r++) {
+            t.add(sa[r] + 1, sa[r], input.length() - sa[r], (r == lb) ? rootDepth : lcp[r]);
+        }
+        subtrees[b] = t;
+    }
+
+    /**
+     * Copies a subtree into the tree in pre-order. The leaves of the top
+     * subtree are buckets, whose roots are added in their place with a block
+     * of ids reserved for the rest of their subtree.
+     * @param t the subtree to copy
+     * @param f the node of the tree which the root of t is copied to
+     * @param block the ids reserved for t, or null if t is the subtree above the buckets
+     */
+    private void copy(Subtree t, int f, FlatTree.Block block) {
+        int n = Subtree.ROOT;
+        while (true) {
+            int c = t.firstChild[n];
+            if (c != FlatTree.NONE) {
+                f = attach(t, c, f, block);
+                n = c;
+                continue;
+            }
+
+            // n is a leaf, move on to the next subtree
+            while (true) {
+                if (n == Subtree.ROOT) return;
+                int p = tree.getParent(f);
+                int sibling = t.nextSibling[n];
+                if (sibling != FlatTree.NONE) {
+                    f = attach(t, sibling, p, block);
+                    n = sibling;
+                    break;
+                }
+                n = t.parent[n];
+                f = p;
+            }
+        }
+    }
+
+    /**
+     * Adds node c of a subtree to the tree, below the node its parent was copied to.
+     * @return the node of the tree that c was copied to
+     */
+    private int attach(Subtree t, int c, int p, FlatTree.Block block) {
+        int parentDepth = t.depth[t.parent[c]];
+        int start  = t.pos[c] + parentDepth;
+        int length = t.depth[c] - parentDepth;
+        if (block != null) return tree.addChild(block, p, start, length, t.leaf[c]);
+        if (t.leaf[c] == FlatTree.NONE) {
+            int f = tree.addChild(p, start, length, FlatTree.NONE);
+            topNodes[topNodeCount++] = f;
+            return f;
+        }
+
+        // A leaf of the top subtree is a bucket
+        int b = t.leaf[c];
+        if (subtrees[b] == null) return tree.addChild(p, start, length, sa[bucketStart[b]] + 1);
+        blocks[b] = tree.reserve(subtrees[b].size, subtrees[b].internal);
+        int f = tree.addChild(blocks[b], p, start, length, FlatTree.NONE);
+        bucketRoot[b] = f;
+        return f;
+    }
+
+    /**
+     * Finds the suffix link of an internal node, given the suffix link of its
+     * parent. Dropping the first character of the path to the node gives a path
+     * which is in the tree, so it is followed by edge lengths alone.
+     */
+    private int findSuffixLink(int v) {
+        int p = tree.getParent(v);
+        int idx = tree.getEdgeStart(v);
+        int length = tree.getEdgeLength(v);
+        int node;
+        if (p == FlatTree.ROOT) {
+            node = FlatTree.ROOT;
+            idx++;
+            length--;
+        } else {
+            node = tree.getSuffixLink(p);
+        }
+
+        while (length > 0) {
+            node = tree.getChild(node, input.charAt(idx));
+            int edgeLength = tree.getEdgeLength(node);
+            idx += edgeLength;
+            length -= edgeLength;
+        }
+        return node;
+    }
+
+    private static final int BUILD = 0;
+    private static final int COPY  = 1;
+    private static final int LINK  = 2;
+
+    /**
+     * Runs one step of the construction for the buckets in [from, to),
+     * halving the range until it holds few enough suffixes: building their
+     * subtrees, copying them into the tree or filling in the suffix links of
+     * their internal nodes. Every task writes the nodes of its own buckets only.
+     */
+    private class BucketTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int step;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        BucketTask(int step, int from, int to, int grain) {
+            this.step  = step;
+            this.from  = from;
+            this.to    = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || bucketStart[to] - bucketStart[from] <= grain) {
+                FlatTree.Visitor linker = new FlatTree.Visitor() {
+                    public void enter(int n, int depth) {
+                        if (!tree.isLeaf(n)) tree.setSuffixLink(n, findSuffixLink(n));
+                    }
+                    public void leave(int n, int depth) {}
+                };
+                for (int b = from; b < to; b++) {
+                    if (step == BUILD) {
+                        buildBucket(b);
+                    } else if (bucketRoot[b] != FlatTree.NONE) {
+                        if (step == COPY) copy(subtrees[b], bucketRoot[b], blocks[b]);
+                        else              tree.walk(bucketRoot[b], 0, linker);
+                    }
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BucketTask(step, from, mid, grain), new BucketTask(step, mid, to, grain));
+        }
+    }
+
+    /**
+     * A subtree built from a range of sorted suffixes, with children kept in
+     * the order they were added. Every node stores the start of some suffix
+     * below it and its depth, from which its edge label follows.
+     */
+    private static class Subtree {
+        static final int ROOT = 0;
+
+        int[] pos;         // Start index of a suffix in the subtree of each node
+        int[] depth;       // Length of the path from the root of the tree
+        int[] parent;
+        int[] leaf;        // Item of each leaf, or NONE for internal nodes
+        int[] firstChild;
+        int[] lastChild;
+        int[] nextSibling;
+        int[] prevSibling;
+        int size;
+        int internal;      // Number of internal nodes
+
+        private int[] stack; // The rightmost path
+        private int top;
+
+        Subtree(int rootPos, int rootDepth, int capacity) {
+            capacity = Math.max(capacity, 1);
+            pos         = new int[capacity];
+            depth       = new int[capacity];
+            parent      = new int[capacity];
+            leaf        = new int[capacity];
+            firstChild  = new int[capacity];
+            lastChild   = new int[capacity];
+            nextSibling = new int[capacity];
+            prevSibling = new int[capacity];
+            stack       = new int[16];
+            newNode(FlatTree.NONE, rootPos, rootDepth, FlatTree.NONE);
+            top = 0;
+            stack[0] = ROOT;
+        }
+
+        /**
+         * Adds a leaf for the next suffix in sorted order.
+         * @param item the leaf index of the suffix (or the bucket it stands for)
+         * @param start the start index of the suffix
+         * @param length the length of the suffix
+         * @param lcp the length of the common prefix with the previous suffix,
+         * or the depth of the root for the first suffix
+         */
+        void add(int item, int start, int length, int lcp) {
+            // Climb the rightmost path to where the new leaf branches off
+            int last = FlatTree.NONE;
+            while (depth[stack[top]] > lcp) last = stack[top--];
+
+            // Split the edge into the last child if the branch is in its middle
+            if (depth[stack[top]] < lcp) {
+                int p = stack[top];
+                int v = newNode(p, pos[last], lcp, FlatTree.NONE);
+                int prev = prevSibling[last];
+                if (prev == FlatTree.NONE) firstChild[p] = v;
+                else                       nextSibling[prev] = v;
+                prevSibling[v] = prev;
+                prevSibling[last] = FlatTree.NONE;
+                lastChild[p] = v;
+                parent[last] = v;
+                firstChild[v] = last;
+                lastChild[v] = last;
+                push(v);
+            }
+
+            int p = stack[top];
+            int l = newNode(p, start, length, item);
+            if (lastChild[p] == FlatTree.NONE) firstChild[p] = l;
+            else                               nextSibling[lastChild[p]] = l;
+            prevSibling[l] = lastChild[p];
+            lastChild[p] = l;
+            push(l);
+        }
+
+        private void push(int v) {
+            if (top + 1 == stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[++top] = v;
+        }
+
+        private int newNode(int p, int start, int d, int item) {
+            if (size == pos.length) {
+                int capacity = size + (size >> 1) + 1;
+                pos         = Arrays.copyOf(pos, capacity);
+                depth       = Arrays.copyOf(depth, capacity);
+                parent      = Arrays.copyOf(parent, capacity);
+                leaf        = Arrays.copyOf(leaf, capacity);
+                firstChild  = Arrays.copyOf(firstChild, capacity);
+                lastChild   = Arrays.copyOf(lastChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+                prevSibling = Arrays.copyOf(prevSibling, capacity);
+            }
+
+            int n = size++;
+            if (item == FlatTree.NONE) internal++;
+            pos[n]         = start;
+            depth[n]       = d;
+            parent[n]      = p;
+            leaf[n]        = item;
+            firstChild[n]  = FlatTree.NONE;
+            lastChild[n]   = FlatTree.NONE;
+            nextSibling[n] = FlatTree.NONE;
+            prevSibling[n] = FlatTree.NONE;
+            return n;
+        }
+    }
+
+}
@@ -0,0 +1,294 @@
+package core;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers newline separated patterns against an index that is built or loaded
+ * once, so each query only pays for the search.
+ *
+ * Every input line is a pattern, and gets one output line, in the same order:
+ * the number of occurrences, a tab and the sorted 1-based positions separated
+ * by spaces, or "!" and a message if the search failed. Queries run on an
+ * executor, up to MAX_PENDING at a time per stream. A single writer per stream
+ * takes the answers in order and flushes its buffer only when no finished
+ * answer is waiting, so a burst of queries is written in few large writes.
+ *
+ * Streams may be stdin/stdout or the connections to a TCP socket on the
+ * loopback interface or a Unix domain socket. At most MAX_CONNECTIONS
+ * connections are served at a time, each on a reader and a writer thread;
+ * further clients wait in the socket's backlog.
+ */
+public class QueryServer {
+
+    /** Largest number of queries of one stream that are searched or waiting to be written. */
+    private static final int MAX_PENDING = 1024;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Largest number of connections served at the same time. */
+    static final int MAX_CONNECTIONS = 64;
+
+    /** Marks the end of the answers of a stream. */
+    private static final Future<String> END = new FutureTask<String>(new Callable<String>() {
+        public String call() { return null; }
+    });
+
+    private final SearchIndex index;
+    private final ExecutorService executor;
+
+    /**
+     * @param index the index to search, which must allow concurrent searches
+     * @param executor runs the searches
+     */
+    public QueryServer(SearchIndex index, ExecutorService executor) {
+        this.index    = index;
+        this.executor = executor;
+    }
+
+    /**
+     * Answers the patterns of a stream until it ends.
+     * @param in the patterns, in UTF-8
+     * @param out receives the answers, in UTF-8
+     */
+    public void serve(InputStream in, OutputStream out) throws IOException {
+        final BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<Future<String>>(MAX_PENDING);
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        final IOException[] writeError = new IOException[1];
+
+        Thread writerThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    write(pending, writer);
+                } catch (IOException e) {
+                    writeError[0] = e;
+                }
+            }
+        }, "query-writer");
+        writerThread.start();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE);
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String pattern = line;
+                Future<String> answer = executor.submit(new Callable<String>() {
+                    public String call() {
+                        return answer(pattern);
+                    }
+                });
+                if (!enqueue(pending, answer, writerThread)) break;
+            }
+            enqueue(pending, END, writerThread);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            writerThread.interrupt();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while serving queries", e);
+        }
+        if (writeError[0] != null) throw writeError[0];
+    }
+
+    /**
+     * Waits for room for an answer, unless the writer has stopped.
+     * @return false if the writer has stopped
+     */
+    private static boolean enqueue(BlockingQueue<Future<String>> pending, Future<String> answer, Thread writer) throws InterruptedException {
+        while (!pending.offer(answer, 100, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the answers in the order of the queries, flushing only when the
+     * next answer isn't ready.
+     */
+    private static void write(BlockingQueue<Future<String>> pending, Writer writer) throws IOException {
+        try {
+            while (true) {
+                Future<String> next = pending.poll();
+                if (next == null) {
+                    writer.flush();
+                    next = pending.take();
+                }
+                if (next == END) break;
+                if (!next.isDone()) writer.flush();
+
+                try {
+                    writer.write(next.get());
+                } catch (ExecutionException e) {
+                    writer.write("!" + e.getCause());
+                }
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the answer line of a pattern, without the newline
+     */
+    private String answer(String pattern) {
+        List<Integer> res = index.search(pattern);
+        Collections.sort(res);
+        StringBuilder sb = new StringBuilder(8 + 8 * res.size());
+        sb.append(res.size()).append('\t');
+        for (int i = 0; i < res.size(); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(res.get(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Accepts connections until the server channel is closed, answering the
+     * patterns of each connection on a thread of its own. No connection is
+     * accepted while MAX_CONNECTIONS are open.
+     */
+    public void serve(ServerSocketChannel server) throws IOException {
+        final Semaphore connections = new Semaphore(MAX_CONNECTIONS);
+        while (true) {
+            final SocketChannel client;
+            try {
+                connections.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while accepting connections", e);
+            }
+            try {
+                client = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                connections.release();
+                throw e;
+            }
+            Thread t = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        serve(inputOf(client), outputOf(client));
+                    } catch (IOException e) {
+                        System.err.println("Connection failed: " + e);
+                    } finally {
+                        try { client.close(); } catch (IOException e) { /* Already gone */ }
+                        connections.release();
+                    }
+                }
+            }, "query-connection");
+            t.start();
+        }
+    }
+
+    /**
+     * @return a server channel listening on a TCP port of the loopback interface
+     */
+    public static ServerSocketChannel openTcp(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        return server;
+    }
+
+    /**
+     * @return a server channel listening on a Unix domain socket, replacing
+     * a stale socket left at the path by an earlier server
+     * @throws FileAlreadyExistsException if the path is anything else, or a
+     * socket that another server still listens on
+     */
+    public static ServerSocketChannel openUnix(Path path) throws IOException {
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            if (!isStaleSocket(path)) throw new FileAlreadyExistsException(path.toString(), null, "not a stale socket");
+            Files.delete(path);
+        }
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(path));
+        return server;
+    }
+
+    /**
+     * @return whether a path is neither a file, a directory nor a link, and
+     * refuses connections, i.e. is a socket nobody listens on any more
+     */
+    private static boolean isStaleSocket(Path path) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attrs.isOther()) return false;
+        SocketChannel probe = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            probe.connect(UnixDomainSocketAddress.of(path));
+            return false;
+        } catch (ConnectException e) {
+            return true;
+        } finally {
+            probe.close();
+        }
+    }
+
+    /*
+     * Streams over a channel that read and write it directly. The streams of
+     * java.nio.channels.Channels lock the whole channel, so a connection could
+     * not be read and written at the same time with them.
+     */
+
+    private static InputStream inputOf(final ReadableByteChannel channel) {
+        return new InputStream() {
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+            }
+
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                return channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    private static OutputStream outputOf(final WritableByteChannel channel) {
+        return new OutputStream() {
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buf = ByteBuffer.wrap(b, off, len);
+                while (buf.hasRemaining()) channel.write(buf);
+            }
+        };
+    }
+
+}
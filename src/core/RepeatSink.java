@@ -0,0 +1,18 @@
+package core;
+
+/**
+ * Receives tandem repeats (idx, length, 2) as they are found, so they can be
+ * counted, filtered or written out without keeping them in memory.
+ */
+public interface RepeatSink {
+
+    /**
+     * Called once for every tandem repeat.
+     * @param idx the 0-based start of the repeat
+     * @param length the length of the repeated string, i.e. half the repeat
+     * @param branching whether the character after the repeat differs from
+     * the one after its first half
+     */
+    void repeat(int idx, int length, boolean branching);
+
+}
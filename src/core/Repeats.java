@@ -0,0 +1,159 @@
+package core;
+
+/**
+ * Linear time repeat analyses over a built suffix tree: maximal repeats, the
+ * longest repeated substring and the longest common substring of two strings.
+ *
+ * Each analysis is a single post-order walk that works out, for every internal
+ * node, its string depth and what its leaves have in common, e.g. whether they
+ * are all preceded by the same character. A node only needs the values of its
+ * children, which are passed up to the parent as each child is left.
+ */
+public class Repeats {
+
+    /** Left character of a node whose leaves are not all preceded by the same character. */
+    private static final int DIVERSE = -1;
+
+    /**
+     * Receives repeats as they are found.
+     */
+    public interface Sink {
+        /**
+         * @param position the 0-based start of one occurrence of the repeat
+         * @param length the length of the repeat
+         * @param count the number of occurrences of the repeat
+         */
+        void repeat(int position, int length, int count);
+    }
+
+    /**
+     * Finds the maximal repeats of a string: the substrings occurring at least
+     * twice that can't be extended to the left or the right without losing an
+     * occurrence. They are the internal nodes of the suffix tree whose leaves
+     * are not all preceded by the same character.
+     * @param input the (encoded) string of the tree
+     * @param tree the suffix tree of the string
+     * @param minLength the shortest repeat to report
+     * @param sink receives every maximal repeat of at least minLength
+     */
+    public static void maximalRepeats(final CharSequence input, final FlatTree tree, int minLength, final Sink sink) {
+        final int size = tree.size();
+        final int[] left  = new int[size]; // The character before every leaf, or DIVERSE
+        final int[] count = new int[size]; // Number of leaves
+        final int[] first = new int[size]; // Start of some leaf
+        final int shortest = Math.max(minLength, 1);
+
+        tree.walk(FlatTree.ROOT, 0, new FlatTree.Visitor() {
+            @Override
+            public void enter(int n, int depth) {
+                if (tree.isLeaf(n)) {
+                    int pos = tree.getLeafIdx(n) - 1;
+                    left[n]  = (pos == 0) ? DIVERSE : input.charAt(pos - 1);
+                    count[n] = 1;
+                    first[n] = pos;
+                } else {
+                    left[n]  = DIVERSE; // Set by the first child left
+                    count[n] = 0;
+                    first[n] = FlatTree.NONE;
+                }
+            }
+
+            @Override
+            public void leave(int n, int depth) {
+                if (n == FlatTree.ROOT) return;
+                if (!tree.isLeaf(n) && left[n] == DIVERSE && depth >= shortest) {
+                    sink.repeat(first[n], depth, count[n]);
+                }
+
+                // Pass the leaves up to the parent
+                int p = tree.getParent(n);
+                if (first[p] == FlatTree.NONE) {
+                    left[p]  = left[n];
+                    first[p] = first[n];
+                } else if (left[p] != left[n]) {
+                    left[p] = DIVERSE;
+                }
+                count[p] += count[n];
+            }
+        });
+    }
+
+    /**
+     * Finds a longest substring occurring at least twice, i.e. the label of
+     * the deepest internal node.
+     * @param tree the suffix tree of the string
+     * @return {0-based start of one occurrence, length}, or null if no
+     * character occurs twice
+     */
+    public static int[] longestRepeatedSubstring(final FlatTree tree) {
+        final int[] best = { FlatTree.NONE, 0 }; // Deepest internal node and its depth
+        tree.walk(FlatTree.ROOT, 0, new FlatTree.Visitor() {
+            @Override
+            public void enter(int n, int depth) {
+                if (n != FlatTree.ROOT && depth > best[1] && !tree.isLeaf(n)) {
+                    best[0] = n;
+                    best[1] = depth;
+                }
+            }
+
+            @Override
+            public void leave(int n, int depth) {}
+        });
+        if (best[0] == FlatTree.NONE) return null;
+
+        int n = best[0];
+        while (!tree.isLeaf(n)) n = tree.getFirstChild(n);
+        return new int[] { tree.getLeafIdx(n) - 1, best[1] };
+    }
+
+    /**
+     * Finds a longest common substring of two strings. Both are built into one
+     * suffix tree, separated by GeneralizedSuffixTree.SEPARATOR, and the
+     * common substrings are the internal nodes with leaves from both strings.
+     * @return {0-based start in a, 0-based start in b, length}, or null if the
+     * strings have no character in common
+     */
+    public static int[] longestCommonSubstring(String a, String b) {
+        if (a.indexOf(GeneralizedSuffixTree.SEPARATOR) >= 0 || b.indexOf(GeneralizedSuffixTree.SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Input contains a reserved symbol");
+        }
+        final int split = a.length(); // Index of the separator
+        final int end = a.length() + 1 + b.length();
+        final FlatTree tree = new McCreight(a + GeneralizedSuffixTree.SEPARATOR + b).getTree();
+
+        final int size = tree.size();
+        final int[] leafA = new int[size]; // Start of some leaf in a, or NONE
+        final int[] leafB = new int[size]; // Start of some leaf in b, or NONE
+        final int[] best = { 0, 0, 0 };
+
+        tree.walk(FlatTree.ROOT, 0, new FlatTree.Visitor() {
+            @Override
+            public void enter(int n, int depth) {
+                leafA[n] = FlatTree.NONE;
+                leafB[n] = FlatTree.NONE;
+                if (tree.isLeaf(n)) {
+                    int pos = tree.getLeafIdx(n) - 1;
+                    if (pos < split)                  leafA[n] = pos;
+                    else if (pos > split && pos < end) leafB[n] = pos - split - 1;
+                }
+            }
+
+            @Override
+            public void leave(int n, int depth) {
+                if (n == FlatTree.ROOT) return;
+                if (leafA[n] != FlatTree.NONE && leafB[n] != FlatTree.NONE && depth > best[2]) {
+                    best[0] = leafA[n];
+                    best[1] = leafB[n];
+                    best[2] = depth;
+                }
+
+                // Pass the leaves up to the parent
+                int p = tree.getParent(n);
+                if (leafA[p] == FlatTree.NONE) leafA[p] = leafA[n];
+                if (leafB[p] == FlatTree.NONE) leafB[p] = leafB[n];
+            }
+        });
+        return (best[2] == 0) ? null : best;
+    }
+
+}
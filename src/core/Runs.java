@@ -0,0 +1,274 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The maximal runs of a string: maximal substrings with a smallest period p
+ * that are at least 2p long. Every tandem repeat lies in exactly one run, so
+ * the runs are a compact form of all tandem repeats. A string has fewer than n
+ * runs, while e.g. a periodic string has quadratically many tandem repeats.
+ *
+ * Runs are found with the Lyndon roots of the runs theorem. Every run contains
+ * a Lyndon word of length p which is the longest Lyndon word starting where it
+ * starts, under one of the two orders of the alphabet. The longest Lyndon word
+ * starting at i ends at the next suffix after i that is smaller than suffix i,
+ * which is read off the inverse suffix array of each order. Each candidate is
+ * then extended to the left and the right as long as the period holds.
+ */
+public class Runs implements Iterable<Runs.Run> {
+
+    private int[] start;  // Start index of each run
+    private int[] end;    // End index (exclusive) of each run
+    private int[] period; // Smallest period of each run
+    private int size;
+
+    /**
+     * Finds the runs of a string.
+     * @param input the string, with 0-based indices
+     */
+    public Runs(CharSequence input) {
+        Alphabet alphabet = Alphabet.of(input);
+        EncodedText text = alphabet.encode(input);
+        int n = text.length();
+        int sigma = alphabet.size();
+
+        start  = new int[16];
+        end    = new int[16];
+        period = new int[16];
+
+        // The terminator is the smallest symbol under both orders
+        int[] ranks = new int[n];
+        int[] reversed = new int[n];
+        char[] mirrored = new char[n]; // The text backwards, still ended by the terminator
+        for (int i = 0; i < n; i++) {
+            ranks[i] = text.charAt(i);
+            reversed[i] = (ranks[i] == Alphabet.TERMINATOR) ? Alphabet.TERMINATOR : sigma + 1 - ranks[i];
+            if (i < n - 1) mirrored[n - 2 - i] = text.charAt(i);
+        }
+        mirrored[n - 1] = (char) Alphabet.TERMINATOR;
+
+        Extension forward = new Extension(text, SuffixArray.sais(ranks, sigma));
+        int[] lyndonEnd = nextSmaller(forward.rank);
+        int[] reversedLyndonEnd = nextSmaller(rankOf(SuffixArray.sais(reversed, sigma)));
+        ranks = null;
+        reversed = null;
+
+        String backwardText = new String(mirrored);
+        mirrored = null;
+        int[] backwardRanks = new int[n];
+        for (int i = 0; i < n; i++) backwardRanks[i] = backwardText.charAt(i);
+        Extension backward = new Extension(backwardText, SuffixArray.sais(backwardRanks, sigma));
+        backwardRanks = null;
+
+        // The last run found of each period, to skip candidates inside it
+        int[] lastStart = new int[n / 2 + 1];
+        int[] lastEnd   = new int[n / 2 + 1];
+        for (int i = 0; i < n - 1; i++) {
+            extend(forward, backward, n, i, lyndonEnd[i], lastStart, lastEnd);
+            extend(forward, backward, n, i, reversedLyndonEnd[i], lastStart, lastEnd);
+        }
+    }
+
+    /**
+     * A run of the string.
+     */
+    public static class Run {
+        public final int start;  // 0-based start
+        public final int end;    // 0-based end, exclusive
+        public final int period; // Smallest period
+
+        public Run(int start, int end, int period) {
+            this.start  = start;
+            this.end    = end;
+            this.period = period;
+        }
+
+        public String toString() { return "(" + start + "," + end + "," + period + ")"; }
+    }
+
+    /**
+     * @return the number of runs
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return run k, in order of their Lyndon roots
+     */
+    public Run get(int k) {
+        if (k < 0 || k >= size) throw new IndexOutOfBoundsException("Run "+k+" of "+size);
+        return new Run(start[k], end[k], period[k]);
+    }
+
+    @Override
+    public Iterator<Run> iterator() {
+        return new Iterator<Run>() {
+            private int next = 0;
+            public boolean hasNext() { return next < size; }
+            public Run next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return get(next++);
+            }
+            public void remove() { throw new UnsupportedOperationException(); }
+        };
+    }
+
+    /**
+     * Expands the runs into the tandem repeats (i, l, 2) they contain, one at
+     * a time as they are asked for. A run [s, e) of period p holds the tandem
+     * repeats of length l = kp for every k with 2kp <= e - s, at i = s .. e - 2l.
+     * @return an iterator over {i, l} pairs, with 0-based i
+     */
+    public Iterator<int[]> tandemRepeats() {
+        return new Iterator<int[]>() {
+            private int run = 0;
+            private int length = (size > 0) ? period[0] : 0;
+            private int idx = (size > 0) ? start[0] : 0;
+
+            public boolean hasNext() {
+                return run < size;
+            }
+
+            public int[] next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int[] res = { idx, length };
+
+                // Next position, then next multiple of the period, then next run
+                idx++;
+                if (idx + 2 * length > end[run]) {
+                    length += period[run];
+                    idx = start[run];
+                    if (start[run] + 2 * length > end[run]) {
+                        run++;
+                        if (run < size) {
+                            length = period[run];
+                            idx = start[run];
+                        }
+                    }
+                }
+                return res;
+            }
+
+            public void remove() { throw new UnsupportedOperationException(); }
+        };
+    }
+
+    /**
+     * Extends the Lyndon word [i, j) to the maximal substring with period j - i,
+     * and records it if it is a run not found before.
+     * @param forward longest common extensions of suffixes of the text
+     * @param backward longest common extensions of suffixes of the text backwards
+     * @param n the length of the text, including the terminator
+     */
+    private void extend(Extension forward, Extension backward, int n, int i, int j, int[] lastStart, int[] lastEnd) {
+        int p = j - i;
+        if (p > lastStart.length - 1) return; // Too long to repeat
+        if (lastEnd[p] != 0 && i >= lastStart[p] && j <= lastEnd[p]) return; // Inside a known run
+
+        // The terminator only matches itself, so the right extension stops before it.
+        // Index x of the text is index n - 2 - x backwards.
+        int right = forward.get(i, j);
+        int left  = (i == 0) ? 0 : backward.get(n - 1 - i, n - 1 - j);
+
+        int runStart = i - left;
+        int runEnd   = j + right;
+        if (runEnd - runStart < 2 * p) return;
+
+        lastStart[p] = runStart;
+        lastEnd[p]   = runEnd;
+        if (size == start.length) {
+            start  = Arrays.copyOf(start, size * 2);
+            end    = Arrays.copyOf(end, size * 2);
+            period = Arrays.copyOf(period, size * 2);
+        }
+        start[size]  = runStart;
+        end[size]    = runEnd;
+        period[size] = p;
+        size++;
+    }
+
+    private static int[] rankOf(int[] sa) {
+        int[] rank = new int[sa.length];
+        for (int r = 0; r < sa.length; r++) rank[sa[r]] = r;
+        return rank;
+    }
+
+    /**
+     * @return for every index i, the first index after i of a smaller rank,
+     * which is where the longest Lyndon word starting at i ends (the terminator
+     * gets the length of the string)
+     */
+    private static int[] nextSmaller(int[] rank) {
+        int n = rank.length;
+        int[] next = new int[n];
+        int[] stack = new int[n];
+        int top = -1;
+        for (int i = n - 1; i >= 0; i--) {
+            while (top >= 0 && rank[stack[top]] > rank[i]) top--;
+            next[i] = (top >= 0) ? stack[top] : n;
+            stack[++top] = i;
+        }
+        return next;
+    }
+
+    /**
+     * Longest common extension queries: the length of the longest common
+     * prefix of two suffixes is the smallest LCP value between their ranks.
+     * The minimum is found with a sparse table over blocks of BLOCK values and
+     * a scan of the two partial blocks, which keeps the table at O(n) ints.
+     */
+    private static class Extension {
+        private static final int BLOCK_SHIFT = 5;
+        private static final int BLOCK = 1 << BLOCK_SHIFT;
+
+        final int[] rank;
+        private final int[] lcp;
+        private final int[][] blockMin; // blockMin[k][b] is the smallest LCP in blocks b .. b + 2^k - 1
+
+        Extension(CharSequence s, int[] sa) {
+            this.lcp  = SuffixArray.kasai(s, sa);
+            this.rank = rankOf(sa);
+
+            int blocks = (lcp.length + BLOCK - 1) >>> BLOCK_SHIFT;
+            int levels = 1;
+            while ((1 << levels) <= blocks) levels++;
+            blockMin = new int[levels][];
+            blockMin[0] = new int[blocks];
+            for (int b = 0; b < blocks; b++) {
+                blockMin[0][b] = scan(b << BLOCK_SHIFT, Math.min((b + 1) << BLOCK_SHIFT, lcp.length));
+            }
+            for (int k = 1; k < levels; k++) {
+                int[] prev = blockMin[k - 1];
+                int[] cur = new int[blocks - (1 << k) + 1];
+                for (int b = 0; b < cur.length; b++) cur[b] = Math.min(prev[b], prev[b + (1 << (k - 1))]);
+                blockMin[k] = cur;
+            }
+        }
+
+        /**
+         * @return the length of the longest common prefix of suffixes i and j
+         */
+        int get(int i, int j) {
+            int lo = Math.min(rank[i], rank[j]) + 1;
+            int hi = Math.max(rank[i], rank[j]) + 1; // Exclusive
+            int loBlock = (lo + BLOCK - 1) >>> BLOCK_SHIFT; // First whole block
+            int hiBlock = hi >>> BLOCK_SHIFT;                // Block after the last whole one
+            if (loBlock >= hiBlock) return scan(lo, hi);
+
+            int min = Math.min(scan(lo, loBlock << BLOCK_SHIFT), scan(hiBlock << BLOCK_SHIFT, hi));
+            int k = 31 - Integer.numberOfLeadingZeros(hiBlock - loBlock);
+            min = Math.min(min, blockMin[k][loBlock]);
+            return Math.min(min, blockMin[k][hiBlock - (1 << k)]);
+        }
+
+        private int scan(int from, int to) {
+            int min = Integer.MAX_VALUE;
+            for (int r = from; r < to; r++) min = Math.min(min, lcp[r]);
+            return min;
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * A cache of search results in front of a search index, for query traffic
+ * where a few patterns make up most lookups. Results are kept as int arrays,
+ * and the least recently used ones are evicted once the cached occurrences
+ * add up to more than a given number.
+ *
+ * Lookups take a lock on the cache, but searches on a miss run outside it, so
+ * concurrent queries only wait for each other on the map itself. Two threads
+ * missing on the same pattern at the same time may both search for it.
+ */
+public class SearchCache implements SearchIndex {
+
+    private final SearchIndex index;
+    private final long maxWeight;
+    private final LinkedHashMap<String, int[]> entries; // In access order, least recent first
+
+    // Statistics, guarded by the lock on entries
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param index the index to search on a miss, which must allow concurrent
+     * searches if the cache is shared between threads
+     * @param maxOccurrences the largest number of occurrences to keep cached.
+     * Every entry counts at least one, so empty results are bounded too.
+     */
+    public SearchCache(SearchIndex index, long maxOccurrences) {
+        if (maxOccurrences < 0) throw new IllegalArgumentException("Negative cache size "+maxOccurrences);
+        this.index     = index;
+        this.maxWeight = maxOccurrences;
+        this.entries   = new LinkedHashMap<String, int[]>(16, 0.75f, true);
+    }
+
+    /**
+     * Lists all occurrences of the query string, from the cache if it is there.
+     * @param query the string to search for
+     * @return a new list of the 1-based start index of every occurrence
+     */
+    public List<Integer> search(String query) {
+        int[] res = lookup(query);
+        List<Integer> list = new ArrayList<Integer>(res.length);
+        for (int i : res) list.add(i);
+        return list;
+    }
+
+    /**
+     * Lists all occurrences of the query string without copying the cached
+     * result.
+     * @param query the string to search for
+     * @return a read-only list of the 1-based start index of every occurrence
+     */
+    public List<Integer> positions(String query) {
+        return new IntList(lookup(query));
+    }
+
+    /**
+     * @return the cached result of the query, searching the index on a miss.
+     * The array may be shared and must not be changed.
+     */
+    private int[] lookup(String query) {
+        synchronized (entries) {
+            int[] res = entries.get(query);
+            if (res != null) {
+                hits++;
+                return res;
+            }
+            misses++;
+        }
+
+        List<Integer> found = index.search(query);
+        int[] res = new int[found.size()];
+        for (int i = 0; i < res.length; i++) res[i] = found.get(i);
+
+        long w = weightOf(res);
+        if (w > maxWeight) return res; // Would evict everything and still not fit
+        synchronized (entries) {
+            int[] old = entries.put(query, res);
+            if (old != null) weight -= weightOf(old);
+            weight += w;
+            Iterator<int[]> it = entries.values().iterator();
+            while (weight > maxWeight) {
+                weight -= weightOf(it.next());
+                it.remove();
+                evictions++;
+            }
+        }
+        return res;
+    }
+
+    private static long weightOf(int[] res) {
+        return Math.max(res.length, 1);
+    }
+
+    /**
+     * Removes all cached results. The statistics are kept.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /** @return the number of queries answered from the cache */
+    public long getHitCount() {
+        synchronized (entries) { return hits; }
+    }
+
+    /** @return the number of queries that had to search the index */
+    public long getMissCount() {
+        synchronized (entries) { return misses; }
+    }
+
+    /** @return the number of results evicted to make room for others */
+    public long getEvictionCount() {
+        synchronized (entries) { return evictions; }
+    }
+
+    /** @return the number of cached results */
+    public int size() {
+        synchronized (entries) { return entries.size(); }
+    }
+
+    /** @return the number of cached occurrences, counting empty results as one */
+    public long getWeight() {
+        synchronized (entries) { return weight; }
+    }
+
+    public String toString() {
+        synchronized (entries) {
+            long total = hits + misses;
+            return String.format("%d hits, %d misses (%.1f%% hit rate), %d evictions, %d results, %d occurrences",
+                    hits, misses, (total == 0) ? 0.0 : 100.0 * hits / total, evictions, entries.size(), weight);
+        }
+    }
+
+    /**
+     * A read-only list view of an int array.
+     */
+    private static class IntList extends AbstractList<Integer> implements RandomAccess {
+        private final int[] values;
+
+        IntList(int[] values) {
+            this.values = values;
+        }
+
+        public Integer get(int i) { return values[i]; }
+        public int size()         { return values.length; }
+    }
+
+}
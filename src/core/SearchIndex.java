@@ -0,0 +1,17 @@
+package core;
+
+import java.util.List;
+
+/**
+ * A full-text index over a string that answers exact pattern queries.
+ */
+public interface SearchIndex {
+
+    /**
+     * Lists all occurrences of the query string in the original string.
+     * @param query the string to search for
+     * @return the 1-based start index of every occurrence, in no particular order
+     */
+    List<Integer> search(String query);
+
+}
@@ -0,0 +1,137 @@
+package core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Searches a stream for a pattern with KMP, reading it through one fixed
+ * buffer. The KMP state is carried from one buffer to the next, so matches
+ * spanning a refill are found, and memory use is O(|pattern| + buffer size)
+ * however long the stream is.
+ *
+ * Byte streams are searched for the UTF-8 encoding of the pattern, and matches
+ * are reported as byte positions. As UTF-8 is self-synchronizing, these are
+ * exactly the places where the pattern occurs in the decoded text. Readers are
+ * searched char by char and report char positions.
+ */
+public class StreamMatch {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+    private char[] pattern;      // The pattern, for readers
+    private int[] border;
+    private char[] bytePattern;  // The UTF-8 bytes of the pattern as values 0..255, for byte streams
+    private int[] byteBorder;
+    private int bufferSize;
+
+    public StreamMatch(String pattern) {
+        this(pattern, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param pattern the non-empty pattern to search for
+     * @param bufferSize the number of bytes or chars read at a time
+     */
+    public StreamMatch(String pattern, int bufferSize) {
+        if (pattern.isEmpty()) throw new IllegalArgumentException("Pattern is empty");
+        if (bufferSize <= 0) throw new IllegalArgumentException("Buffer size must be positive");
+
+        this.pattern = pattern.toCharArray();
+        this.border  = ExactMatch.constructBorderArray(pattern);
+
+        byte[] bytes = pattern.getBytes(StandardCharsets.UTF_8);
+        this.bytePattern = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) bytePattern[i] = (char) (bytes[i] & 0xFF);
+        this.byteBorder = ExactMatch.constructBorderArray(new String(bytePattern));
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Receives the matches of a search as they are found.
+     */
+    public interface Listener {
+        /**
+         * @param position the 1-based start of the match in the stream
+         */
+        void match(long position);
+    }
+
+    /**
+     * Searches a byte stream for the UTF-8 encoding of the pattern.
+     * @param in the stream, read to its end but not closed
+     * @param listener receives the byte position of every match
+     * @return the number of matches
+     */
+    public long search(InputStream in, Listener listener) throws IOException {
+        return search(Channels.newChannel(in), listener);
+    }
+
+    /**
+     * Searches a channel for the UTF-8 encoding of the pattern.
+     * @param in the channel, read to its end but not closed
+     * @param listener receives the byte position of every match
+     * @return the number of matches
+     */
+    public long search(ReadableByteChannel in, Listener listener) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bufferSize);
+        char[] p = bytePattern;
+        int m = p.length;
+        int q = 0;         // Length of the pattern prefix matched so far
+        long offset = 0;   // Stream position of the start of the buffer
+        long count = 0;
+
+        while (in.read(buffer) != -1) {
+            buffer.flip();
+            int n = buffer.limit();
+            for (int i = 0; i < n; i++) {
+                int c = buffer.get(i) & 0xFF;
+                while (q > 0 && p[q] != c) q = byteBorder[q - 1];
+                if (p[q] == c) q++;
+                if (q == m) {
+                    listener.match(offset + i - m + 2);
+                    count++;
+                    q = byteBorder[q - 1];
+                }
+            }
+            offset += n;
+            buffer.clear();
+        }
+        return count;
+    }
+
+    /**
+     * Searches a character stream for the pattern.
+     * @param in the reader, read to its end but not closed
+     * @param listener receives the char position of every match
+     * @return the number of matches
+     */
+    public long search(Reader in, Listener listener) throws IOException {
+        char[] t = new char[bufferSize];
+        char[] p = pattern;
+        int m = p.length;
+        int q = 0;
+        long offset = 0;
+        long count = 0;
+
+        int n;
+        while ((n = in.read(t, 0, t.length)) != -1) {
+            for (int i = 0; i < n; i++) {
+                while (q > 0 && p[q] != t[i]) q = border[q - 1];
+                if (p[q] == t[i]) q++;
+                if (q == m) {
+                    listener.match(offset + i - m + 2);
+                    count++;
+                    q = border[q - 1];
+                }
+            }
+            offset += n;
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,339 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Suffix array and LCP array of the encoded input, as a smaller alternative to
+ * the suffix tree. The suffix array is built in linear time with SA-IS and the
+ * LCP array with Kasai's algorithm. Searches take O(|P| + log n) character
+ * comparisons, using the LCP of every binary search range with its midpoint.
+ *
+ * Suffixes are ordered by alphabet rank, i.e. by character value with the
+ * terminator before everything else.
+ */
+public class SuffixArray implements SearchIndex {
+
+    private Alphabet alphabet;
+    private EncodedText input;
+    private int[] sa;  // sa[r] is the start index of the suffix of rank r
+    private int[] lcp; // lcp[r] is the longest common prefix of suffixes sa[r-1] and sa[r], lcp[0] = 0
+    private int[] lcpLo; // lcpLo[m] is the lcp of the suffix of rank m and the lower end of the search range split at m
+    private int[] lcpHi; // lcpHi[m] is the lcp of the suffix of rank m and the upper end of the search range split at m
+
+    public SuffixArray(String input) {
+        this.alphabet = Alphabet.of(input);
+        this.input = alphabet.encode(input);
+
+        Instrumentation.BuildEvent event = new Instrumentation.BuildEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        int[] s = new int[this.input.length()];
+        for (int i = 0; i < s.length; i++) s[i] = this.input.charAt(i);
+        this.sa  = sais(s, alphabet.size());
+        this.lcp = kasai(this.input, sa);
+        this.lcpLo = new int[sa.length];
+        this.lcpHi = new int[sa.length];
+        if (sa.length > 0) lcpLR(-1, sa.length);
+        Instrumentation.buildDone(event, start, "SuffixArray", this.input.length(), 0, 0, 0, 0);
+    }
+
+    /**
+     * Fills lcpLo and lcpHi for the midpoints of all ranges the binary search
+     * in bound can split below (lo, hi). The ranks -1 and n stand for the ends
+     * of the array and have no common prefix with any suffix.
+     * @return the lcp of the suffixes at lo and hi
+     */
+    private int lcpLR(int lo, int hi) {
+        if (hi - lo == 1) return (lo < 0 || hi == sa.length) ? 0 : lcp[hi];
+        int mid = (lo + hi) >>> 1;
+        lcpLo[mid] = lcpLR(lo, mid);
+        lcpHi[mid] = lcpLR(mid, hi);
+        return Math.min(lcpLo[mid], lcpHi[mid]);
+    }
+
+    public Alphabet getAlphabet()  { return alphabet; }
+    public EncodedText getInput()  { return input; }
+    public int[] getSuffixArray()  { return sa; }
+    public int[] getLcp()          { return lcp; }
+
+    void addTo(Footprint f) {
+        f.add("sa",    sa.length,    Footprint.intArray(sa.length));
+        f.add("lcp",   lcp.length,   Footprint.intArray(lcp.length));
+        f.add("lcpLo", lcpLo.length, Footprint.intArray(lcpLo.length));
+        f.add("lcpHi", lcpHi.length, Footprint.intArray(lcpHi.length));
+    }
+
+    public void findTandemRepeats() {
+        TandemRepeat.Printer printer = new TandemRepeat.Printer(System.err);
+        TandemRepeat.find(input, this, printer);
+        printer.finish();
+    }
+
+    /**
+     * Compares the query, from a given offset, with the suffix at a given rank.
+     * @param query the encoded string to search for
+     * @param r the rank of the suffix to compare with
+     * @param from the number of characters already known to match
+     * @return the length of the common prefix, negated and minus one if the
+     * suffix is smaller than the query at the first mismatch
+     */
+    private int compare(String query, int r, int from) {
+        int suffix = sa[r];
+        int i = from;
+        while (i < query.length()) {
+            if (suffix + i == input.length()) return -i - 1;
+            int c1 = input.charAt(suffix + i);
+            int c2 = query.charAt(i);
+            if (c1 != c2) return (c1 < c2) ? -i - 1 : i;
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Binary searches for the first rank whose suffix is not smaller than the
+     * query (or, if upper is set, whose suffix does not start with the query
+     * either). The query is only compared with the suffix at the midpoint if
+     * that suffix matches it as far as the closer end of the range does, which
+     * lcpLo and lcpHi tell, and then from there on. Each character of the
+     * query is matched at most once, so the search makes O(|P| + log n)
+     * comparisons.
+     */
+    private int bound(String query, boolean upper) {
+        int lo = -1, hi = sa.length;
+        int loMatch = 0, hiMatch = 0;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (loMatch >= hiMatch) {
+                // The suffix at mid is on the side of lo if it shares more than loMatch with it
+                if (lcpLo[mid] > loMatch) { lo = mid; continue; }
+                if (lcpLo[mid] < loMatch) { hi = mid; hiMatch = lcpLo[mid]; continue; }
+            } else {
+                if (lcpHi[mid] > hiMatch) { hi = mid; continue; }
+                if (lcpHi[mid] < hiMatch) { lo = mid; loMatch = lcpHi[mid]; continue; }
+            }
+            int c = compare(query, mid, Math.max(loMatch, hiMatch));
+            boolean smaller = c < 0 || (upper && c == query.length());
+            int match = (c < 0) ? -c - 1 : c;
+            if (smaller) { lo = mid; loMatch = match; }
+            else         { hi = mid; hiMatch = match; }
+        }
+        return hi;
+    }
+
+    /**
+     * Lists all occurrences of the query string in the original string.
+     * @param query the string to search for
+     * @return a list of all occurrences of the query string in the original string
+     */
+    public List<Integer> search(String query) {
+        Instrumentation.SearchEvent event = new Instrumentation.SearchEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        List<Integer> res = new ArrayList<Integer>();
+
+        // A query with a character not in the input can't occur
+        String find = alphabet.encodeQuery(query);
+        if (find != null) {
+            int from = bound(find, false);
+            int to   = bound(find, true);
+            for (int r = from; r < to; r++) res.add(sa[r] + 1);
+        }
+        Instrumentation.searchDone(event, start, "SuffixArray", query.length(), res.size());
+        return res;
+    }
+
+    /**
+     * Receives the lcp-intervals of the suffix array. The lcp-intervals are
+     * exactly the internal nodes of the suffix tree: the interval [lb, rb] holds
+     * the ranks of the leaves in the subtree, and the children are the ranges
+     * between consecutive child starts (single ranks being leaves).
+     */
+    public interface IntervalVisitor {
+        /**
+         * @param depth the length of the common prefix of the interval aka. the depth of the node
+         * @param lb the first rank in the interval
+         * @param rb the last rank in the interval
+         * @param childStarts the first rank of each child, in increasing order
+         * @param childCount the number of children
+         */
+        void visit(int depth, int lb, int rb, int[] childStarts, int childCount);
+    }
+
+    /**
+     * Visits all lcp-intervals bottom-up (children before their parent), ending
+     * with the root interval [0, n-1]. The childStarts array is reused between
+     * calls.
+     */
+    public void visitIntervals(IntervalVisitor visitor) {
+        int n = sa.length;
+        int[] frameDepth = new int[n + 1];
+        int[] frameLb    = new int[n + 1];
+        int[] frameBase  = new int[n + 1];
+        int[] bounds     = new int[2 * n + 2]; // Child starts of all open intervals
+        int[] childStarts = new int[n + 1];
+        int top = 0, boundCount = 0;
+
+        frameDepth[0] = 0;
+        frameLb[0]    = 0;
+        frameBase[0]  = 0;
+        bounds[boundCount++] = 0;
+
+        for (int i = 1; i <= n; i++) {
+            int cur = (i < n) ? lcp[i] : -1;
+            int lb = i - 1;
+
+            // Close every interval that ends at i-1
+            while (top >= 0 && cur < frameDepth[top]) {
+                int childCount = boundCount - frameBase[top];
+                System.arraycopy(bounds, frameBase[top], childStarts, 0, childCount);
+                visitor.visit(frameDepth[top], frameLb[top], i - 1, childStarts, childCount);
+                lb = frameLb[top];
+                boundCount = frameBase[top];
+                top--;
+            }
+            if (cur < 0) break;
+
+            // Open a new interval starting where the last closed one did
+            if (cur > frameDepth[top]) {
+                top++;
+                frameDepth[top] = cur;
+                frameLb[top]    = lb;
+                frameBase[top]  = boundCount;
+                bounds[boundCount++] = lb;
+            }
+            bounds[boundCount++] = i;
+        }
+    }
+
+    /**
+     * Builds the suffix array with SA-IS (induced sorting).
+     * @param s the string, as characters in [0, upper]
+     * @param upper the largest possible character
+     * @return the suffix array of s
+     */
+    static int[] sais(int[] s, int upper) {
+        int n = s.length;
+        if (n == 0) return new int[0];
+        if (n == 1) return new int[] { 0 };
+        if (n == 2) return (s[0] < s[1]) ? new int[] { 0, 1 } : new int[] { 1, 0 };
+
+        // Classify suffixes as S-type (smaller than the next suffix) or L-type
+        int[] sa = new int[n];
+        boolean[] ls = new boolean[n];
+        for (int i = n - 2; i >= 0; i--) {
+            ls[i] = (s[i] == s[i + 1]) ? ls[i + 1] : (s[i] < s[i + 1]);
+        }
+
+        // Bucket starts: sumL[c] is the first L-slot of c, sumS[c] the first S-slot
+        int[] sumL = new int[upper + 1];
+        int[] sumS = new int[upper + 1];
+        for (int i = 0; i < n; i++) {
+            if (!ls[i]) sumS[s[i]]++;
+            else        sumL[s[i] + 1]++;
+        }
+        for (int i = 0; i <= upper; i++) {
+            sumS[i] += sumL[i];
+            if (i < upper) sumL[i + 1] += sumS[i];
+        }
+
+        // Sort the LMS-substrings
+        int[] lmsMap = new int[n + 1];
+        Arrays.fill(lmsMap, -1);
+        int m = 0;
+        for (int i = 1; i < n; i++) {
+            if (!ls[i - 1] && ls[i]) lmsMap[i] = m++;
+        }
+        int[] lms = new int[m];
+        for (int i = 1, j = 0; i < n; i++) {
+            if (!ls[i - 1] && ls[i]) lms[j++] = i;
+        }
+        induce(s, sa, ls, sumL, sumS, lms);
+
+        if (m > 0) {
+            // Name the LMS-substrings by rank and sort the reduced string recursively
+            int[] sortedLms = new int[m];
+            for (int i = 0, j = 0; i < n; i++) {
+                if (lmsMap[sa[i]] != -1) sortedLms[j++] = sa[i];
+            }
+            int[] recS = new int[m];
+            int recUpper = 0;
+            recS[lmsMap[sortedLms[0]]] = 0;
+            for (int i = 1; i < m; i++) {
+                int l = sortedLms[i - 1], r = sortedLms[i];
+                int endL = (lmsMap[l] + 1 < m) ? lms[lmsMap[l] + 1] : n;
+                int endR = (lmsMap[r] + 1 < m) ? lms[lmsMap[r] + 1] : n;
+                boolean same = true;
+                if (endL - l != endR - r) {
+                    same = false;
+                } else {
+                    while (l < endL && s[l] == s[r]) {
+                        l++;
+                        r++;
+                    }
+                    if (l == n || s[l] != s[r]) same = false;
+                }
+                if (!same) recUpper++;
+                recS[lmsMap[sortedLms[i]]] = recUpper;
+            }
+
+            int[] recSa = sais(recS, recUpper);
+            for (int i = 0; i < m; i++) sortedLms[i] = lms[recSa[i]];
+            induce(s, sa, ls, sumL, sumS, sortedLms);
+        }
+
+        return sa;
+    }
+
+    /**
+     * Induces the order of all suffixes from the order of the LMS-suffixes.
+     */
+    private static void induce(int[] s, int[] sa, boolean[] ls, int[] sumL, int[] sumS, int[] lms) {
+        int n = s.length;
+        Arrays.fill(sa, -1);
+        int[] buf = new int[sumS.length];
+
+        System.arraycopy(sumS, 0, buf, 0, buf.length);
+        for (int d : lms) {
+            if (d != n) sa[buf[s[d]]++] = d;
+        }
+
+        System.arraycopy(sumL, 0, buf, 0, buf.length);
+        sa[buf[s[n - 1]]++] = n - 1;
+        for (int i = 0; i < n; i++) {
+            int v = sa[i];
+            if (v >= 1 && !ls[v - 1]) sa[buf[s[v - 1]]++] = v - 1;
+        }
+
+        System.arraycopy(sumL, 0, buf, 0, buf.length);
+        for (int i = n - 1; i >= 0; i--) {
+            int v = sa[i];
+            if (v >= 1 && ls[v - 1]) sa[--buf[s[v - 1] + 1]] = v - 1;
+        }
+    }
+
+    /**
+     * Builds the LCP array with Kasai's algorithm.
+     */
+    static int[] kasai(CharSequence s, int[] sa) {
+        int n = sa.length;
+        int[] rank = new int[n];
+        for (int r = 0; r < n; r++) rank[sa[r]] = r;
+
+        int[] lcp = new int[n];
+        int h = 0;
+        for (int i = 0; i < n; i++) {
+            if (h > 0) h--;
+            if (rank[i] == 0) {
+                h = 0;
+                continue;
+            }
+            int j = sa[rank[i] - 1];
+            while (i + h < n && j + h < n && s.charAt(i + h) == s.charAt(j + h)) h++;
+            lcp[rank[i]] = h;
+        }
+        return lcp;
+    }
+}
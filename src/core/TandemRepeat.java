@@ -1,91 +1,413 @@
 package core;
 
-import java.util.*;
-
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds all tandem repeats of a string with the Stoye-Gusfield algorithm:
+ * branching repeats are found from the leaf lists of the internal nodes of the
+ * suffix tree (or the lcp-intervals of the suffix array), and the others by
+ * rotating the branching ones to the left.
+ *
+ * The leaf list of a node is never built, as the leaves of a subtree have
+ * consecutive DFS numbers: a list is just an interval of DFS numbers, read
+ * through leafAt. Every repeat is found exactly once, so repeats are passed
+ * straight on to a RepeatSink, and nothing but a few int arrays is kept.
+ *
+ * Every internal node only reads the DFS numbering, so once the tree is
+ * numbered its nodes can also be processed in parallel, see
+ * TandemRepeat(CharSequence, FlatTree, ForkJoinPool).
+ */
 public class TandemRepeat {
 
-    String input;        // The string the suffix tree contains
+    /** Smallest number of leaves worth a task of its own in the parallel mode. */
+    private static final int PARALLEL_MIN_LEAVES = 1 << 12;
+
+    CharSequence input;  // The (encoded) string the suffix tree contains
+    RepeatSink sink;     // Receives the repeats
     int[] dfsNumbering;  // A conversion array from leaf indices to their DFS numbers
-    Set<Repeat> repeats; // Contains all tandem repeats found
+    int[] leafAt;        // and back
+    int[] dfsSpanStarts; // The DFS number of the first leaf of each node
+    int[] dfsSpanEnds;   // The DFS number after the last leaf of each node
+
+    // The repeats, when collected by the constructors
+    private long[] repeats; // idx << 32 | length, branching repeats first
+    private int size;
+    private int branchingCount;
+    private long found; // The repeats passed on by find
 
-    public TandemRepeat(String input, Node root) {
+    /**
+     * Finds the tandem repeats of a suffix tree and collects them.
+     */
+    public TandemRepeat(CharSequence input, FlatTree tree) {
+        Instrumentation.TandemRepeatEvent event = new Instrumentation.TandemRepeatEvent();
+        event.begin();
+        long start = Instrumentation.start();
         this.input = input;
-        this.repeats = new HashSet<Repeat>();
-        dfsNumbering = new int[input.length()];
-        findBranchingRepeats(root, 1, 0);
-        findNonBranchingRepeats();
+        Collector collector = new Collector();
+        this.sink = collector;
+        findBranchingRepeats(tree, FlatTree.ROOT);
+        merge(Collections.singletonList(collector));
+        Instrumentation.tandemRepeatsDone(event, start, input.length(), size);
+    }
+
+    /**
+     * Finds the tandem repeats of a suffix tree in parallel and collects them.
+     * The tree is numbered in one pass, and then split into subtrees of at most
+     * about n / (4 * parallelism) leaves that are processed as separate tasks,
+     * each collecting its own repeats. The collections are joined at the end.
+     * @param pool the pool to run the tasks on
+     */
+    public TandemRepeat(CharSequence input, FlatTree tree, ForkJoinPool pool) {
+        Instrumentation.TandemRepeatEvent event = new Instrumentation.TandemRepeatEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        this.input = input;
+        numberLeaves(tree, FlatTree.ROOT, null);
+
+        List<Collector> parts = Collections.synchronizedList(new ArrayList<Collector>());
+        int grain = Math.max(input.length() / (pool.getParallelism() * 4), PARALLEL_MIN_LEAVES);
+        pool.invoke(new SubtreeTask(tree, FlatTree.ROOT, 0, grain, parts));
+        merge(parts);
+        Instrumentation.tandemRepeatsDone(event, start, input.length(), size);
+    }
+
+    /**
+     * Finds the tandem repeats from a suffix array instead of a suffix tree, and
+     * collects them.
+     */
+    public TandemRepeat(CharSequence input, SuffixArray sa) {
+        Instrumentation.TandemRepeatEvent event = new Instrumentation.TandemRepeatEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        this.input = input;
+        Collector collector = new Collector();
+        this.sink = collector;
+        findBranchingRepeats(sa);
+        merge(Collections.singletonList(collector));
+        Instrumentation.tandemRepeatsDone(event, start, input.length(), size);
+    }
+
+    private TandemRepeat(CharSequence input, final RepeatSink sink) {
+        this.input = input;
+        this.sink = new RepeatSink() {
+            public void repeat(int idx, int length, boolean branching) {
+                sink.repeat(idx, length, true);
+                found += 1 + rotate(idx, length, sink);
+            }
+        };
+    }
+
+    /**
+     * Finds the tandem repeats of a suffix tree, passing each to a sink as soon
+     * as it is found.
+     * @param input the string of the tree
+     * @param tree the suffix tree of the string
+     * @param sink receives every tandem repeat exactly once
+     */
+    public static void find(CharSequence input, FlatTree tree, RepeatSink sink) {
+        Instrumentation.TandemRepeatEvent event = new Instrumentation.TandemRepeatEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        TandemRepeat finder = new TandemRepeat(input, sink);
+        finder.findBranchingRepeats(tree, FlatTree.ROOT);
+        Instrumentation.tandemRepeatsDone(event, start, input.length(), finder.found);
+    }
+
+    /**
+     * Finds the tandem repeats of a string from its suffix array, passing each
+     * to a sink as soon as it is found.
+     * @param input the string of the suffix array
+     * @param sa the suffix array of the string
+     * @param sink receives every tandem repeat exactly once
+     */
+    public static void find(CharSequence input, SuffixArray sa, RepeatSink sink) {
+        Instrumentation.TandemRepeatEvent event = new Instrumentation.TandemRepeatEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        TandemRepeat finder = new TandemRepeat(input, sink);
+        finder.findBranchingRepeats(sa);
+        Instrumentation.tandemRepeatsDone(event, start, input.length(), finder.found);
+    }
+
+    /**
+     * Writes each repeat on a line as it gets it, followed by a line with the
+     * number of branching and non-branching repeats once finish is called.
+     */
+    public static class Printer implements RepeatSink {
+        private PrintStream out;
+        private long branching;
+        private long nonBranching;
+
+        public Printer(PrintStream out) {
+            this.out = out;
+        }
+
+        public void repeat(int idx, int length, boolean branching) {
+            out.print(format(idx, length, branching));
+            out.print('\n');
+            if (branching) this.branching++;
+            else           this.nonBranching++;
+        }
+
+        public void finish() {
+            out.print(branching + " " + nonBranching + "\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * @return the number of tandem repeats
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of branching tandem repeats
+     */
+    public int getBranchingCount() {
+        return branchingCount;
+    }
+
+    /**
+     * Passes the collected repeats to a sink, branching repeats first.
+     */
+    public void replay(RepeatSink sink) {
+        for (int k = 0; k < size; k++) {
+            sink.repeat((int) (repeats[k] >>> 32), (int) repeats[k], k < branchingCount);
+        }
     }
 
     public String toString() {
-        int branchingCount = 0;
         StringBuilder sb = new StringBuilder();
-        for (Repeat r : repeats) {
-            sb.append(r.toString()).append('\n');
-            if (r.branching) branchingCount++;
+        for (int k = 0; k < size; k++) {
+            sb.append(format((int) (repeats[k] >>> 32), (int) repeats[k], k < branchingCount)).append('\n');
         }
-        sb.append(branchingCount).append(" ").append(repeats.size() - branchingCount).append('\n');
+        sb.append(branchingCount).append(" ").append(size - branchingCount).append('\n');
         return sb.toString();
     }
 
+    private static String format(int idx, int length, boolean branching) {
+        return "(" + idx + "," + length + ",2) " + ((branching) ? "branching" : "non-branching");
+    }
+
     /**
-     * Find all non-branching tandem repeats from the branching ones found by
-     * left rotating them.
+     * Collects the repeats it gets as packed keys, and adds the non-branching
+     * repeats of every branching one it gets.
      */
-    private void findNonBranchingRepeats() {
-        List<Repeat> nonBranching = new ArrayList<Repeat>();
-        for (Repeat r : repeats) {
-            int curIdx = r.idx - 1;
-            while (curIdx >= 0 && input.charAt(curIdx) == input.charAt(curIdx + r.len)) {
-                nonBranching.add(new Repeat(curIdx, r.len, false));
-                curIdx--;
+    private class Collector implements RepeatSink {
+        long[] branching = new long[16];
+        long[] nonBranching = new long[16];
+        int branchingSize;
+        int nonBranchingSize;
+
+        public void repeat(int idx, int length, boolean branching) {
+            long key = (long) idx << 32 | length;
+            if (branching) {
+                if (branchingSize == this.branching.length) {
+                    this.branching = Arrays.copyOf(this.branching, branchingSize + (branchingSize >> 1));
+                }
+                this.branching[branchingSize++] = key;
+                rotate(idx, length, this);
+            } else {
+                if (nonBranchingSize == nonBranching.length) {
+                    nonBranching = Arrays.copyOf(nonBranching, nonBranchingSize + (nonBranchingSize >> 1));
+                }
+                nonBranching[nonBranchingSize++] = key;
             }
         }
-        repeats.addAll(nonBranching);
     }
 
     /**
-     * DFS post-order traverse the tree, and process each internal node by
-     * finding branching tandem repeats.
-     * @param n the node to process
-     * @param curIdx the DFS-number to give the next leaf
-     * @param depth the depth of the node aka. the length of the label of the node
-     * @return a list of leaf indices that is in the subtree of this node
-     */
-    private VeryList<Integer> findBranchingRepeats(Node n, int curIdx, int depth) {
-        // Handle leaves
-        if (n.getAllEdges().isEmpty()) {
-            int leafNumber = n.leafIdx - 1;
-            dfsNumbering[leafNumber] = curIdx;
-            return new VeryList<Integer>(leafNumber);
+     * Joins collected repeats into one array, branching repeats first.
+     */
+    private void merge(List<Collector> parts) {
+        long total = 0;
+        for (Collector c : parts) total += c.branchingSize + c.nonBranchingSize;
+        if (total > Integer.MAX_VALUE - 8) throw new IllegalStateException("Too many tandem repeats to collect: "+total);
+
+        repeats = new long[(int) total];
+        for (Collector c : parts) {
+            System.arraycopy(c.branching, 0, repeats, size, c.branchingSize);
+            size += c.branchingSize;
+        }
+        branchingCount = size;
+        for (Collector c : parts) {
+            System.arraycopy(c.nonBranching, 0, repeats, size, c.nonBranchingSize);
+            size += c.nonBranchingSize;
+        }
+    }
+
+    /**
+     * Finds the non-branching tandem repeats that left rotate from a branching
+     * one. Each non-branching repeat rotates right into exactly one branching
+     * repeat, so none is found twice.
+     * @return the number of non-branching repeats found
+     */
+    private int rotate(int idx, int length, RepeatSink sink) {
+        int curIdx = idx - 1;
+        while (curIdx >= 0 && input.charAt(curIdx) == input.charAt(curIdx + length)) {
+            sink.repeat(curIdx, length, false);
+            curIdx--;
         }
+        return idx - 1 - curIdx;
+    }
 
-        // Handle internal nodes
-        int dfsSpanStart = curIdx;
-        List<VeryList<Integer>> subtreeLeafLists = new ArrayList<VeryList<Integer>>();
-        int largestSubtree = -1;
-        for (Edge e : n.getAllEdges()) {
-            VeryList<Integer> subtreeLeafList = findBranchingRepeats(e.getTo(), curIdx, depth + e.getLength());
-            subtreeLeafLists.add(subtreeLeafList);
-            curIdx += subtreeLeafList.size();
-
-            // Keep track of the largest subtree
-            if (largestSubtree == -1 || subtreeLeafList.size() > subtreeLeafLists.get(largestSubtree).size()) {
-                largestSubtree = subtreeLeafLists.size() - 1;
+    /**
+     * Finds the branching repeats from the lcp-intervals of a suffix array. The
+     * ranks of the suffix array serve as DFS numbers, and the lcp-intervals are
+     * the subtree intervals of the internal nodes.
+     */
+    private void findBranchingRepeats(SuffixArray sa) {
+        leafAt = sa.getSuffixArray();
+        dfsNumbering = new int[input.length()];
+        for (int r = 0; r < leafAt.length; r++) dfsNumbering[leafAt[r]] = r;
+
+        sa.visitIntervals(new SuffixArray.IntervalVisitor() {
+            @Override
+            public void visit(int depth, int lb, int rb, int[] childStarts, int childCount) {
+                // Find the largest child subtree
+                int largestSubtree = 0;
+                for (int i = 1; i < childCount; i++) {
+                    if (childEnd(i, childStarts, childCount, rb) - childStarts[i] >
+                        childEnd(largestSubtree, childStarts, childCount, rb) - childStarts[largestSubtree]) {
+                        largestSubtree = i;
+                    }
+                }
+                int largestStart = childStarts[largestSubtree];
+                int largestEnd = childEnd(largestSubtree, childStarts, childCount, rb);
+
+                // Process LL' (the leaf list without the largest child subtree)
+                for (int i = 0; i < childCount; i++) {
+                    if (i == largestSubtree) continue;
+                    processNode(childStarts[i], childEnd(i, childStarts, childCount, rb), depth, lb, rb + 1, largestStart, largestEnd, sink);
+                }
             }
+
+            private int childEnd(int i, int[] childStarts, int childCount, int rb) {
+                return (i + 1 < childCount) ? childStarts[i + 1] : rb + 1;
+            }
+        });
+    }
+
+    /**
+     * DFS post-order traverse the tree, and process each internal node by
+     * finding branching tandem repeats. The traversal is iterative, so deep
+     * trees (e.g. of Fibonacci strings) don't overflow the stack.
+     * @param tree the suffix tree
+     * @param top the root of the tree
+     */
+    private void findBranchingRepeats(FlatTree tree, int top) {
+        numberLeaves(tree, top, sink);
+    }
+
+    /**
+     * Numbers the leaves of the tree in DFS order.
+     * @param sink if not null, every internal node is processed, with its
+     * repeats passed to sink, once its leaves are numbered
+     */
+    private void numberLeaves(final FlatTree tree, int top, final RepeatSink sink) {
+        dfsNumbering = new int[input.length()];
+        leafAt = new int[input.length() + 1];
+        dfsSpanStarts = new int[tree.size()];
+        dfsSpanEnds = new int[tree.size()];
+
+        tree.walk(top, 0, new FlatTree.Visitor() {
+            private int curIdx = 1; // The DFS-number to give the next leaf
+
+            @Override
+            public void enter(int n, int depth) {
+                dfsSpanStarts[n] = curIdx;
+
+                // Handle leaves
+                if (tree.isLeaf(n)) {
+                    int leafNumber = tree.getLeafIdx(n) - 1;
+                    dfsNumbering[leafNumber] = curIdx;
+                    leafAt[curIdx] = leafNumber;
+                    curIdx++;
+                }
+            }
+
+            @Override
+            public void leave(int n, int depth) {
+                dfsSpanEnds[n] = curIdx;
+
+                // Handle internal nodes, whose children have all been handled
+                if (sink != null && !tree.isLeaf(n)) processChildren(tree, n, depth, sink);
+            }
+        });
+    }
+
+    /**
+     * Processes the subtree of a node. Subtrees of more than grain leaves are
+     * split: the node itself is processed here, and each internal child gets a
+     * task of its own.
+     */
+    private class SubtreeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FlatTree tree;
+        private final int node;
+        private final int depth;
+        private final int grain;
+        private final List<Collector> parts;
+
+        SubtreeTask(FlatTree tree, int node, int depth, int grain, List<Collector> parts) {
+            this.tree  = tree;
+            this.node  = node;
+            this.depth = depth;
+            this.grain = grain;
+            this.parts = parts;
         }
-        int dfsSpanEnd = curIdx;
-
-        // Build LL and LL' (the leaf list without the largest child subtree)
-        VeryList<Integer> leafList = new VeryList<Integer>();
-        VeryList<Integer> leafListPrime = new VeryList<Integer>();
-        for (int i = 0; i < subtreeLeafLists.size(); i++) {
-            leafList.append(subtreeLeafLists.get(i));
-            if (i != largestSubtree) leafListPrime.append(subtreeLeafLists.get(i));
+
+        @Override
+        protected void compute() {
+            final Collector collector = new Collector();
+            parts.add(collector);
+
+            if (dfsSpanEnds[node] - dfsSpanStarts[node] <= grain) {
+                tree.walk(node, depth, new FlatTree.Visitor() {
+                    public void enter(int n, int depth) {}
+                    public void leave(int n, int depth) {
+                        if (!tree.isLeaf(n)) processChildren(tree, n, depth, collector);
+                    }
+                });
+                return;
+            }
+
+            processChildren(tree, node, depth, collector);
+            List<SubtreeTask> tasks = new ArrayList<SubtreeTask>();
+            for (int c = tree.getFirstChild(node); c != FlatTree.NONE; c = tree.getNextSibling(c)) {
+                if (!tree.isLeaf(c)) tasks.add(new SubtreeTask(tree, c, depth + tree.getEdgeLength(c), grain, parts));
+            }
+            invokeAll(tasks);
         }
+    }
 
-        processNode(leafListPrime, depth, dfsSpanStart, dfsSpanEnd);
+    /**
+     * Finds the branching tandem repeats of an internal node whose leaves are
+     * numbered, from the leaves of all but its largest child.
+     */
+    private void processChildren(FlatTree tree, int n, int depth, RepeatSink sink) {
+        int largestStart = 0, largestEnd = 0;
+        for (int c = tree.getFirstChild(n); c != FlatTree.NONE; c = tree.getNextSibling(c)) {
+            if (dfsSpanEnds[c] - dfsSpanStarts[c] > largestEnd - largestStart) {
+                largestStart = dfsSpanStarts[c];
+                largestEnd = dfsSpanEnds[c];
+            }
+        }
 
-        return leafList;
+        // Process LL' (the leaf list without the largest child subtree)
+        for (int c = tree.getFirstChild(n); c != FlatTree.NONE; c = tree.getNextSibling(c)) {
+            if (dfsSpanStarts[c] == largestStart) continue;
+            processNode(dfsSpanStarts[c], dfsSpanEnds[c], depth, dfsSpanStarts[n], dfsSpanEnds[n], largestStart, largestEnd, sink);
+        }
     }
 
     /**
@@ -110,140 +432,42 @@ public class TandemRepeat {
      *  z = i + (2*depth)
      *  n = input.length()
      *
-     * @param leafListPrime a list of all leaf indices in the subtree except for the largest child subtree
+     * When both y and i are in LL', case 1 of y already finds the repeat at y, so
+     * case 2 only reports it when y is in the largest child subtree.
+     *
+     * @param from the first DFS number of the leaves of LL' to process
+     * @param to the end (exclusive) of the DFS numbers of the leaves to process
      * @param depth the depth of the node aka. the length of the label of the node
      * @param dfsSpanStart the start of the DFS numbering of the children
-     * @param dfsSpanEnd the end of the DFS numbering of the children
+     * @param dfsSpanEnd the end (exclusive) of the DFS numbering of the children
+     * @param largestStart the start of the DFS numbering of the largest child
+     * @param largestEnd the end (exclusive) of the DFS numbering of the largest child
+     * @param sink receives the repeats found
      */
-    private void processNode(VeryList<Integer> leafListPrime, int depth, int dfsSpanStart, int dfsSpanEnd) {
-        for (Integer i : leafListPrime) {
+    private void processNode(int from, int to, int depth, int dfsSpanStart, int dfsSpanEnd, int largestStart, int largestEnd, RepeatSink sink) {
+        int n = input.length();
+        for (int r = from; r < to; r++) {
+            int i = leafAt[r];
             int x = i + depth;
             int y = i - depth;
             int z = i + (2 * depth);
-            int n = input.length();
 
             // Case 1
             if (z < n) {
                 int xDFS = dfsNumbering[x];
-                if(xDFS >= dfsSpanStart && xDFS <= dfsSpanEnd && input.charAt(i) != input.charAt(z)) {
-                    repeats.add(new Repeat(i, depth, true));
+                if (xDFS >= dfsSpanStart && xDFS < dfsSpanEnd && input.charAt(i) != input.charAt(z)) {
+                    sink.repeat(i, depth, true);
                 }
             }
 
             // Case 2
             if (y >= 0 && x < n) {
                 int yDFS = dfsNumbering[y];
-                if (yDFS >= dfsSpanStart && yDFS <= dfsSpanEnd && input.charAt(y) != input.charAt(x)) {
-                    repeats.add(new Repeat(y, depth, true));
+                if (yDFS >= largestStart && yDFS < largestEnd && input.charAt(y) != input.charAt(x)) {
+                    sink.repeat(y, depth, true);
                 }
             }
         }
     }
 
-    /**
-     * A simple class to contain the information of a tandem repeat.
-     */
-    private class Repeat implements Comparable<Repeat> {
-        boolean branching;
-        int idx, len;
-        public Repeat(int i, int l, boolean b) { idx = i; len = l; branching = b; }
-        public String toString() { return String.format("(%d,%d,2) %s", idx, len, (branching) ? "branching" : "non-branching"); }
-        public int hashCode() { return idx * 19 + len * 7; }
-
-        public boolean equals(Object obj) {
-            if (this == obj) return true;
-            if (obj == null) return false;
-            if (!(obj instanceof Repeat)) return false;
-
-            Repeat r = (Repeat) obj;
-            return (idx == r.idx && len == r.len);
-        }
-
-        public int compareTo(Repeat r) {
-            if (idx > r.idx) return 1;
-            if (idx < r.idx) return -1;
-            return len - r.len;
-        }
-    }
-
-    private static class VeryList<E> implements Iterable<E> {
-        private Entry<E> first;
-        private Entry<E> last;
-
-        private int size;
-
-        public VeryList() {
-            first = null;
-            last  = null;
-            size  = 0;
-        }
-
-        public VeryList(E element) {
-            this();
-            add(element);
-        }
-
-        public void add(E element) {
-            Entry<E> entry = new Entry<E>(element);
-            if (first == null) {
-                first = last = entry;
-            } else {
-                last.next = entry;
-                last = entry;
-            }
-            size++;
-        }
-
-        public void append(VeryList<E> other) {
-            if (first == null) {
-                first = other.first;
-                last  = other.last;
-            } else {
-                last.next = other.first;
-                last = other.last;
-            }
-            size += other.size;
-        }
-
-        public int size() {
-            return size;
-        }
-
-        @Override
-        public Iterator<E> iterator() {
-            return new Iterator<E>() {
-                private Entry<E> current = null;
-
-                @Override
-                public boolean hasNext() {
-                    return first != null && (current == null || current.next != null);
-                }
-
-                @Override
-                public E next() {
-                    if (current == null) {
-                        current = first;
-                    } else {
-                        current = current.next;
-                    }
-                    return current.element;
-                }
-
-                @Override
-                public void remove() {
-                    throw new IllegalArgumentException("Ulovligheder!!");
-                }
-            };
-        }
-
-        private class Entry<E> {
-            private E element;
-            private Entry<E> next;
-
-            public Entry(E element) {
-                this.element = element;
-                this.next    = null;
-            }
-        }
-    }
 }
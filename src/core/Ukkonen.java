@@ -0,0 +1,265 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Online suffix tree construction with Ukkonen's algorithm. Characters can be
+ * appended one at a time or in chunks, and the prefix indexed so far can be
+ * searched at any time. Leaf edges are open, so they grow with the text
+ * without being touched.
+ *
+ * The text is stored as ranks of an alphabet that grows as new characters
+ * arrive, at two bits per character for up to four distinct characters and
+ * widened to a byte or a char as more arrive (see EncodedText.Growable).
+ *
+ * Until finish() appends the terminator, the tree is implicit: the last few
+ * suffixes of the text (the ones that also occur earlier) have no leaf yet.
+ * They are all suffixes of the longest one, which also occurs earlier in the
+ * text, so search finds their occurrences from the explicit occurrences in
+ * that earlier copy.
+ */
+public class Ukkonen implements SearchIndex {
+
+    private Alphabet alphabet;
+    private EncodedText.Growable input; // The ranks of the text
+    private FlatTree tree;
+    private boolean finished;
+
+    /*
+     * The active point is where the next character is inserted: activeLength
+     * characters down the edge out of activeNode that starts with the character
+     * at activeEdgeIdx. remainder is the number of suffixes that are still
+     * implicit.
+     */
+    private int activeNode;
+    private int activeEdgeIdx;
+    private int activeLength;
+    private int remainder;
+    private int needSuffixLink;
+
+    // Recorded by finish(), as the build runs from the construction to there
+    private Instrumentation.BuildEvent buildEvent;
+    private long buildStart;
+    private long edgeSplits; // Counted if Instrumentation.ENABLED
+
+    public Ukkonen() {
+        this.alphabet   = new Alphabet();
+        this.input      = new EncodedText.Growable(alphabet);
+        this.tree       = new FlatTree(input, 16);
+        this.activeNode = FlatTree.ROOT;
+        this.buildEvent = new Instrumentation.BuildEvent();
+        buildEvent.begin();
+        this.buildStart = Instrumentation.start();
+    }
+
+    public Ukkonen(String input) {
+        this();
+        append(input);
+    }
+
+    /**
+     * @return the number of characters indexed so far
+     */
+    public int length() {
+        return input.length();
+    }
+
+    /**
+     * @return the array backed tree built over the text so far
+     */
+    public FlatTree getTree() {
+        return tree;
+    }
+
+    /**
+     * @return the alphabet of the text so far
+     */
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * @return the ranks of the text so far, ending with the terminator once finished
+     */
+    public EncodedText getInput() {
+        return input;
+    }
+
+    /**
+     * Appends a chunk of characters to the text.
+     */
+    public void append(CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++) append(chunk.charAt(i));
+    }
+
+    /**
+     * Appends the terminal symbol, turning every suffix into a leaf. No more
+     * characters can be appended afterwards.
+     */
+    public void finish() {
+        extend((char) Alphabet.TERMINATOR);
+        finished = true;
+        Instrumentation.buildDone(buildEvent, buildStart, "Ukkonen", input.length(), tree.size(), 0, 0, edgeSplits);
+        buildEvent = null;
+    }
+
+    /**
+     * Appends a character to the text and extends the tree with it.
+     */
+    public void append(char c) {
+        extend((char) alphabet.add(c));
+    }
+
+    /**
+     * Extends the tree with the next rank of the text.
+     */
+    private void extend(char c) {
+        if (finished) throw new IllegalStateException("Can't append to a finished suffix tree");
+
+        input.append(c);
+        int pos = input.length() - 1;
+        needSuffixLink = FlatTree.NONE;
+        remainder++;
+
+        while (remainder > 0) {
+            if (activeLength == 0) activeEdgeIdx = pos;
+
+            int next = tree.getChild(activeNode, input.charAt(activeEdgeIdx));
+            if (next == FlatTree.NONE) {
+                // No edge starts with the character, so the suffix gets a leaf right here
+                tree.addChild(activeNode, pos, FlatTree.OPEN, pos - remainder + 2);
+                addSuffixLink(activeNode);
+            } else {
+                // Walk down if the active point is beyond this edge
+                int length = tree.getEdgeLength(next);
+                if (activeLength >= length) {
+                    activeEdgeIdx += length;
+                    activeLength  -= length;
+                    activeNode     = next;
+                    continue;
+                }
+
+                // The character is already there, so this and all shorter suffixes are implicit
+                if (input.charAt(tree.getEdgeStart(next) + activeLength) == c) {
+                    activeLength++;
+                    addSuffixLink(activeNode);
+                    break;
+                }
+
+                // Split the edge and hang the new leaf below the split
+                int split = tree.splitEdge(next, activeLength);
+                if (Instrumentation.ENABLED) edgeSplits++;
+                tree.addChild(split, pos, FlatTree.OPEN, pos - remainder + 2);
+                addSuffixLink(split);
+            }
+            remainder--;
+
+            // Move on to the next shorter suffix
+            if (activeNode == FlatTree.ROOT && activeLength > 0) {
+                activeLength--;
+                activeEdgeIdx = pos - remainder + 1;
+            } else {
+                int link = tree.getSuffixLink(activeNode);
+                activeNode = (link != FlatTree.NONE) ? link : FlatTree.ROOT;
+            }
+        }
+    }
+
+    /**
+     * Links the last internal node created in this step to a given node.
+     */
+    private void addSuffixLink(int n) {
+        if (needSuffixLink != FlatTree.NONE && needSuffixLink != FlatTree.ROOT) {
+            tree.setSuffixLink(needSuffixLink, n);
+        }
+        needSuffixLink = n;
+    }
+
+    /**
+     * Lists all occurrences of the query string in the text indexed so far.
+     * Takes O(|P| + occ) time, however many suffixes are still implicit.
+     * @param query the string to search for
+     * @return a list of all occurrences of the query string in the text
+     */
+    public List<Integer> search(String query) {
+        Instrumentation.SearchEvent event = new Instrumentation.SearchEvent();
+        event.begin();
+        long start = Instrumentation.start();
+        List<Integer> res = collect(query);
+        Instrumentation.searchDone(event, start, "Ukkonen", query.length(), res.size());
+        return res;
+    }
+
+    /**
+     * Lists all occurrences of the query string, for search to record.
+     */
+    private List<Integer> collect(String query) {
+        List<Integer> res = new ArrayList<Integer>();
+
+        // The empty string occurs at every index, and after the last character
+        if (query.isEmpty()) {
+            int n = finished ? input.length() - 1 : input.length();
+            for (int i = 1; i <= n + 1; i++) res.add(i);
+            return res;
+        }
+
+        // A query with a character not in the text can't occur
+        query = alphabet.encodeQuery(query);
+        if (query == null) return res;
+
+        // Search as far down the tree as possible
+        int node = FlatTree.ROOT;
+        int findCharCount = 0;
+        while (findCharCount < query.length()) {
+            node = tree.getChild(node, query.charAt(findCharCount));
+            if (node == FlatTree.NONE) return res;
+            int edgeIdx = tree.getEdgeStart(node);
+            int matchLength = Math.min(tree.getEdgeLength(node), query.length() - findCharCount);
+            for (int i = 0; i < matchLength; i++) {
+                if (input.charAt(edgeIdx + i) != query.charAt(findCharCount + i)) return res;
+            }
+            findCharCount += matchLength;
+        }
+
+        // The leaves below are the explicit occurrences (an empty tree has none)
+        if (node != FlatTree.ROOT || !tree.isLeaf(node)) tree.collectLeaves(node, res);
+        if (remainder == 0) return res;
+
+        /*
+         * The implicit suffixes are the suffixes of the text from n-remainder
+         * on, and that string also occurs d characters earlier, from first on.
+         * So an occurrence at i >= n-remainder has another at i-d, and going
+         * back by d until below n-remainder ends at an explicit occurrence in
+         * [first, n-remainder). Each implicit occurrence is reached from
+         * exactly one of those, by going forward by d while the query fits.
+         */
+        int n = input.length();
+        int first = earlierOccurrence();
+        int d = n - remainder - first;
+        for (int k = 0, explicit = res.size(); k < explicit; k++) {
+            int idx = res.get(k) - 1;
+            if (idx < first || idx >= n - remainder) continue;
+            for (int i = idx + d; i < n && i + query.length() <= n; i += d) res.add(i + 1);
+        }
+
+        return res;
+    }
+
+    /**
+     * @return the start of an explicit occurrence of the longest implicit
+     * suffix, read off the edge the active point is on
+     */
+    private int earlierOccurrence() {
+        // Every edge's start is preceded in the text by the label of its parent
+        int end;
+        if (activeLength > 0) {
+            int next = tree.getChild(activeNode, input.charAt(activeEdgeIdx));
+            end = tree.getEdgeStart(next) + activeLength;
+        } else {
+            end = tree.getEdgeStart(activeNode) + tree.getEdgeLength(activeNode);
+        }
+        return end - remainder;
+    }
+
+}
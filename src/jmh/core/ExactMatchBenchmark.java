@@ -0,0 +1,62 @@
+package core;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The naive, border array and KMP matchers of ExactMatch, for an 8 character
+ * pattern taken from the text.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ExactMatchBenchmark {
+
+    @Param({ "fibonacci", "random", "dna", "periodic" })
+    public String kind;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int size;
+
+    private String text;
+    private String pattern;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(size);
+        text = Inputs.generate(kind, size, random);
+        pattern = Inputs.patterns(text, 8, 1, random)[0];
+    }
+
+    @Benchmark
+    public List<Integer> naive() {
+        return new ExactMatch(text, pattern).searchNaive();
+    }
+
+    @Benchmark
+    public List<Integer> border() {
+        return new ExactMatch(text, pattern).searchBorderArray();
+    }
+
+    @Benchmark
+    public List<Integer> kmp() {
+        return new ExactMatch(text, pattern).searchKMP();
+    }
+
+}
@@ -0,0 +1,67 @@
+package core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * McCreight construction, and suffix tree search with short and long patterns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SuffixTreeBenchmark {
+
+    private static final int PATTERN_COUNT = 64;
+
+    @Param({ "fibonacci", "random", "dna", "periodic" })
+    public String kind;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int size;
+
+    private String text;
+    private McCreight mc;
+    private String[] shortPatterns;
+    private String[] longPatterns;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(size);
+        text = Inputs.generate(kind, size, random);
+        mc = new McCreight(text);
+        shortPatterns = Inputs.patterns(text, 4, PATTERN_COUNT, random);
+        longPatterns  = Inputs.patterns(text, 64, PATTERN_COUNT, random);
+    }
+
+    @Benchmark
+    public McCreight build() {
+        return new McCreight(text);
+    }
+
+    @Benchmark
+    public int searchShort() {
+        return mc.search(shortPatterns[next++ % PATTERN_COUNT]).size();
+    }
+
+    @Benchmark
+    public int searchLong() {
+        return mc.search(longPatterns[next++ % PATTERN_COUNT]).size();
+    }
+
+}
@@ -0,0 +1,60 @@
+package core;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tandem repeat finding on a built suffix tree, streamed into a sink and
+ * collected in parallel. Sizes stop at 10000, as periodic inputs have
+ * quadratically many tandem repeats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TandemRepeatBenchmark {
+
+    @Param({ "fibonacci", "random", "dna", "periodic" })
+    public String kind;
+
+    @Param({ "1000", "10000" })
+    public int size;
+
+    private McCreight mc;
+
+    @Setup
+    public void setup() {
+        mc = new McCreight(Inputs.generate(kind, size, new Random(size)));
+    }
+
+    @Benchmark
+    public void find(final Blackhole bh) {
+        TandemRepeat.find(mc.getInput(), mc.getTree(), new RepeatSink() {
+            public void repeat(int idx, int length, boolean branching) {
+                bh.consume(idx);
+            }
+        });
+    }
+
+    @Benchmark
+    public int parallel() {
+        return new TandemRepeat(mc.getInput(), mc.getTree(), ForkJoinPool.commonPool()).size();
+    }
+
+}
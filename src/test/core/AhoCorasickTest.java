@@ -0,0 +1,62 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class AhoCorasickTest {
+
+    private static void assertMatches(String text, List<String> patterns) {
+        Set<AhoCorasick.Match> expected = new HashSet<AhoCorasick.Match>();
+        int count = 0;
+        for (int p = 0; p < patterns.size(); p++) {
+            for (int i : Naive.occurrences(text, patterns.get(p))) {
+                expected.add(new AhoCorasick.Match(p, i));
+                count++;
+            }
+        }
+        List<AhoCorasick.Match> found = new AhoCorasick(patterns).search(text);
+        assertEquals(count, found.size(), patterns.toString());
+        assertEquals(expected, new HashSet<AhoCorasick.Match>(found), patterns.toString());
+    }
+
+    @Test
+    public void matchesNaiveScanOfEveryPattern() {
+        Random random = new Random(1);
+        for (int round = 0; round < 300; round++) {
+            String kind = Inputs.KINDS[round % Inputs.KINDS.length];
+            String text = Inputs.generate(kind, 1 + random.nextInt(2000), random);
+            List<String> patterns = new ArrayList<String>();
+            int count = 1 + random.nextInt(round % 2 == 0 ? 5 : 200);
+            for (int k = 0; k < count; k++) {
+                if (random.nextInt(4) == 0) {
+                    patterns.add(Inputs.random(1 + random.nextInt(6), 26, random));
+                } else {
+                    int i = random.nextInt(text.length());
+                    patterns.add(text.substring(i, Math.min(text.length(), i + 1 + random.nextInt(10))));
+                }
+            }
+            assertMatches(text, patterns);
+        }
+    }
+
+    @Test
+    public void reportsNestedAndRepeatedPatterns() {
+        assertMatches("ushers", Arrays.asList("he", "she", "his", "hers", "he", "s"));
+        assertMatches(Fibonacci.generate("a", "b", 15), Arrays.asList("a", "ab", "aba", "abaab", "b", "bb", "baab"));
+    }
+
+    @Test
+    public void rejectsEmptyPatterns() {
+        assertThrows(IllegalArgumentException.class, () -> new AhoCorasick(Arrays.asList("a", "")));
+    }
+
+}
@@ -0,0 +1,106 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ApproximateSearchTest {
+
+    /**
+     * @return the smallest distance of an occurrence at every 1-based start
+     * position that has one within k
+     */
+    private static Map<Integer, Integer> naive(String text, String pattern, int k, ApproximateSearch.Mode mode) {
+        Map<Integer, Integer> res = new HashMap<Integer, Integer>();
+        int m = pattern.length();
+        for (int i = 0; i < text.length(); i++) {
+            int best;
+            if (mode == ApproximateSearch.Mode.HAMMING) {
+                if (i + m > text.length()) break;
+                best = 0;
+                for (int j = 0; j < m; j++) if (text.charAt(i + j) != pattern.charAt(j)) best++;
+            } else {
+                // Edit distance of the pattern to text[i, j) for every j up to
+                // i + m + k, as longer substrings are more than k away
+                int[] prev = new int[m + 1];
+                for (int p = 0; p <= m; p++) prev[p] = p;
+                best = prev[m];
+                for (int j = i; j < Math.min(text.length(), i + m + k); j++) {
+                    int[] cur = new int[m + 1];
+                    cur[0] = j - i + 1;
+                    for (int p = 1; p <= m; p++) {
+                        int sub = prev[p - 1] + ((text.charAt(j) == pattern.charAt(p - 1)) ? 0 : 1);
+                        cur[p] = Math.min(sub, Math.min(prev[p], cur[p - 1]) + 1);
+                    }
+                    prev = cur;
+                    best = Math.min(best, prev[m]);
+                }
+            }
+            if (best <= k) res.put(i + 1, best);
+        }
+        return res;
+    }
+
+    private static void assertSearch(McCreight mc, String text, String pattern, int k, ApproximateSearch.Mode mode) {
+        List<ApproximateSearch.Match> found = mc.searchApprox(pattern, k, mode);
+        Map<Integer, Integer> positions = new HashMap<Integer, Integer>();
+        for (ApproximateSearch.Match match : found) positions.put(match.position, match.distance);
+        String where = text + " / " + pattern + " k=" + k + " " + mode;
+        assertEquals(found.size(), positions.size(), where);
+        assertEquals(naive(text, pattern, k, mode), positions, where);
+    }
+
+    @Test
+    public void matchesNaiveDistances() {
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            String kind = Inputs.KINDS[round % Inputs.KINDS.length];
+            String text = Inputs.generate(kind, 1 + random.nextInt(150), random);
+            McCreight mc = new McCreight(text);
+            for (int q = 0; q < 5; q++) {
+                int i = random.nextInt(text.length());
+                String pattern = text.substring(i, Math.min(text.length(), i + 2 + random.nextInt(8)));
+                if (q == 4) pattern = Inputs.random(pattern.length(), 26, random);
+                for (int k = 0; k < Math.min(pattern.length(), 4); k++) {
+                    assertSearch(mc, text, pattern, k, ApproximateSearch.Mode.HAMMING);
+                    assertSearch(mc, text, pattern, k, ApproximateSearch.Mode.EDIT);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matchesNaiveDistancesOfLongPatterns() {
+        Random random = new Random(2);
+        for (String kind : Inputs.KINDS) {
+            String text = Inputs.generate(kind, 1000, random);
+            McCreight mc = new McCreight(text);
+            for (int q = 0; q < 3; q++) {
+                int i = random.nextInt(text.length() - 250);
+                StringBuilder pattern = new StringBuilder(text.substring(i, i + 200 + random.nextInt(50)));
+                for (int edit = 0; edit < q; edit++) {
+                    int j = random.nextInt(pattern.length());
+                    if (edit % 2 == 0) pattern.setCharAt(j, text.charAt(random.nextInt(text.length())));
+                    else               pattern.deleteCharAt(j);
+                }
+                for (int k = 1; k < 4; k += 2) assertSearch(mc, text, pattern.toString(), k, ApproximateSearch.Mode.EDIT);
+            }
+        }
+    }
+
+    @Test
+    public void patternCharactersOutsideTheTextNeverMatch() {
+        String text = Fibonacci.generate("a", "b", 10);
+        McCreight mc = new McCreight(text);
+        for (int k = 0; k < 3; k++) {
+            assertSearch(mc, text, "abxab", k, ApproximateSearch.Mode.HAMMING);
+            assertSearch(mc, text, "abxab", k, ApproximateSearch.Mode.EDIT);
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * The tree of a unary string is as deep as the string is long, so recursive
+ * traversals of it overflow the stack after a few thousand characters.
+ */
+public class DeepTreeTest {
+
+    /**
+     * Runs a test body on a new thread with the default stack size, so the
+     * test does not depend on the stack of the thread running the tests.
+     */
+    private static void onNewThread(final Runnable body) throws Throwable {
+        final Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    body.run();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure[0] != null) throw failure[0];
+    }
+
+    @Test
+    public void searchesADeepTree() throws Throwable {
+        onNewThread(new Runnable() {
+            public void run() {
+                McCreight mc = new McCreight("a".repeat(200000));
+                assertEquals(2 * 200000 + 1, mc.getTree().size());
+                assertEquals(200000, mc.search("a").size());
+                assertEquals(100001, mc.search("a".repeat(100000)).size());
+                assertEquals(100001, mc.count("a".repeat(100000)));
+                assertEquals(10, mc.search("a", 10).size());
+            }
+        });
+    }
+
+    @Test
+    public void findsTheTandemRepeatsOfADeepTree() throws Throwable {
+        onNewThread(new Runnable() {
+            public void run() {
+                int n = 20000;
+                McCreight mc = new McCreight("a".repeat(n));
+                final long[] found = new long[2];
+                TandemRepeat.find(mc.getInput(), mc.getTree(), new RepeatSink() {
+                    public void repeat(int idx, int length, boolean branching) {
+                        found[branching ? 0 : 1]++;
+                    }
+                });
+
+                // Every (i, l) with i + 2l <= n is a tandem repeat, and it is
+                // branching only if it ends the string
+                long expected = 0;
+                for (int l = 1; 2 * l <= n; l++) expected += n - 2 * l + 1;
+                assertEquals(n / 2, found[0]);
+                assertEquals(expected, found[0] + found[1]);
+            }
+        });
+    }
+
+    @Test
+    public void printsADeepTree() throws Throwable {
+        final File dot = new File("suffixtree.dot");
+        try {
+            onNewThread(new Runnable() {
+                public void run() {
+                    McCreight mc = new McCreight("a".repeat(20000));
+                    try {
+                        DotMaker maker = new DotMaker("a");
+                        maker.addTree(mc.getTree(), mc.getAlphabet());
+                        maker.close();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+            assertTrue(dot.length() > 0);
+        } finally {
+            dot.delete();
+        }
+    }
+
+}
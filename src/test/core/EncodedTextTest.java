@@ -0,0 +1,50 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class EncodedTextTest {
+
+    private static void assertRanks(Alphabet alphabet, String text, EncodedText encoded) {
+        assertEquals(text.length() + 1, encoded.length());
+        for (int i = 0; i < text.length(); i++) assertEquals(alphabet.rank(text.charAt(i)), encoded.charAt(i));
+        assertEquals(Alphabet.TERMINATOR, encoded.charAt(text.length()));
+    }
+
+    @Test
+    public void storesEveryAlphabetSize() {
+        Random random = new Random(1);
+        for (int sigma : new int[] { 1, 4, 5, 255, 256, 2000 }) {
+            String text = Inputs.random(5000, sigma, random);
+            Alphabet alphabet = Alphabet.of(text);
+            EncodedText encoded = alphabet.encode(text);
+            assertRanks(alphabet, text, encoded);
+            long n = text.length();
+            assertEquals((sigma <= 4) ? 8 * ((n + 31) / 32) : (sigma <= 255) ? n : 2 * n, encoded.bytes());
+            assertEquals(text, alphabet.decode(encoded.subSequence(0, text.length())));
+        }
+    }
+
+    @Test
+    public void growableWidensAsRanksGrow() {
+        Random random = new Random(2);
+        Alphabet alphabet = new Alphabet();
+        EncodedText.Growable growable = new EncodedText.Growable(alphabet);
+        StringBuilder sb = new StringBuilder();
+        for (int sigma : new int[] { 3, 4, 100, 255, 256, 3000 }) {
+            for (int i = 0; i < 1000; i++) {
+                char c = (char) ('a' + random.nextInt(sigma));
+                sb.append(c);
+                growable.append(alphabet.add(c));
+            }
+            assertEquals(sb.length(), growable.length());
+            for (int i = 0; i < sb.length(); i++) assertEquals(alphabet.rank(sb.charAt(i)), growable.charAt(i));
+        }
+        growable.append(Alphabet.TERMINATOR);
+        assertRanks(alphabet, sb.toString(), growable);
+    }
+
+}
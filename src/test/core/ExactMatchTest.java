@@ -0,0 +1,64 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class ExactMatchTest {
+
+    private static void assertAllModes(String text, String pattern) {
+        List<Integer> expected = Naive.occurrences(text, pattern);
+        ExactMatch em = new ExactMatch(text, pattern);
+        assertEquals(expected, em.searchNaive(), pattern);
+        assertEquals(expected, em.searchBorderArray(), pattern);
+        assertEquals(expected, em.searchKMP(), pattern);
+        assertEquals(expected, em.searchHorspool(), pattern);
+        assertEquals(expected, em.searchFirstCharFilter(), pattern);
+        assertEquals(expected, em.search(), pattern);
+    }
+
+    @Test
+    public void everyModeMatchesNaiveScan() {
+        Random random = new Random(1);
+        for (int round = 0; round < 400; round++) {
+            String text = Inputs.generate(Inputs.KINDS[round % Inputs.KINDS.length], 1 + random.nextInt(2000), random);
+            int i = random.nextInt(text.length());
+            String pattern = text.substring(i, Math.min(text.length(), i + 1 + random.nextInt(20)));
+            assertAllModes(text, pattern);
+            assertAllModes(text, pattern + "q");
+        }
+    }
+
+    @Test
+    public void parallelSearchFindsMatchesAcrossChunks() {
+        Random random = new Random(2);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String kind : Inputs.KINDS) {
+                // Several chunks of PARALLEL_MIN_CHUNK, so matches cross chunk ends
+                String text = Inputs.generate(kind, 5 * ExactMatch.PARALLEL_MIN_CHUNK + random.nextInt(1000), random);
+                for (int k = 0; k < 10; k++) {
+                    int i = random.nextInt(text.length());
+                    String pattern = text.substring(i, Math.min(text.length(), i + 1 + random.nextInt(30)));
+                    assertEquals(Naive.occurrences(text, pattern), new ExactMatch(text, pattern).searchParallel(pool), pattern);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void horspoolHandlesCharactersSharingALowByte() {
+        // š and a ('a') share the low byte 0x61
+        String text = "ašaššaaša";
+        assertAllModes(text, "ša");
+        assertAllModes(text, "ašša");
+        assertAllModes(text, "šaša");
+    }
+
+}
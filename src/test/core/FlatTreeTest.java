@@ -0,0 +1,147 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class FlatTreeTest {
+
+    // Texts with at most DENSE_ALPHABET_LIMIT characters get dense child rows, the others sibling lists
+    private static final String DENSE  = "abcab$";
+    private static final String SPARSE = "abcdefghijab$";
+
+    /**
+     * Builds a suffix tree by walking every suffix down from the root, so it
+     * only relies on getChild, addChild and splitEdge. The text must end with
+     * a unique character.
+     */
+    private static FlatTree naiveTree(String text) {
+        FlatTree tree = new FlatTree(text, 1);
+        for (int i = 0; i < text.length(); i++) {
+            int node = FlatTree.ROOT;
+            int idx = i;
+            while (true) {
+                int child = tree.getChild(node, text.charAt(idx));
+                if (child == FlatTree.NONE) {
+                    tree.addChild(node, idx, text.length() - idx, i + 1);
+                    break;
+                }
+                int start = tree.getEdgeStart(child);
+                int length = tree.getEdgeLength(child);
+                int j = 0;
+                while (j < length && text.charAt(start + j) == text.charAt(idx + j)) j++;
+                if (j < length) {
+                    int mid = tree.splitEdge(child, j);
+                    tree.addChild(mid, idx + j, text.length() - idx - j, i + 1);
+                    break;
+                }
+                node = child;
+                idx += length;
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Checks that every leaf spells its suffix, that every internal node
+     * branches, and that the child lists agree with getChild and getParent.
+     */
+    static void assertSuffixTree(String text, FlatTree tree) {
+        int leaves = 0;
+        for (int n = 0; n < tree.size(); n++) {
+            if (tree.isLeaf(n)) {
+                leaves++;
+                StringBuilder path = new StringBuilder();
+                for (int m = n; m != FlatTree.ROOT; m = tree.getParent(m)) path.insert(0, tree.getLabel(m));
+                assertEquals(text.substring(tree.getLeafIdx(n) - 1), path.toString());
+                continue;
+            }
+
+            Set<Character> first = new HashSet<Character>();
+            for (int c = tree.getFirstChild(n); c != FlatTree.NONE; c = tree.getNextSibling(c)) {
+                char ch = text.charAt(tree.getEdgeStart(c));
+                assertTrue(first.add(ch), "Two children start with "+ch);
+                assertEquals(n, tree.getParent(c));
+                assertEquals(c, tree.getChild(n, ch));
+            }
+            assertTrue(n == FlatTree.ROOT || first.size() >= 2, "Node "+n+" does not branch");
+            assertEquals(FlatTree.NONE, tree.getLeafIdx(n));
+            for (int i = 0; i < text.length(); i++) {
+                if (!first.contains(text.charAt(i))) assertEquals(FlatTree.NONE, tree.getChild(n, text.charAt(i)));
+            }
+        }
+        assertEquals(text.length(), leaves);
+    }
+
+    @Test
+    public void buildsSuffixTreesWithBothChildTables() {
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            int sigma = 1 + random.nextInt(round % 2 == 0 ? FlatTree.DENSE_ALPHABET_LIMIT - 1 : 40);
+            String text = Inputs.random(1 + random.nextInt(60), sigma, random) + "$";
+            assertSuffixTree(text, naiveTree(text));
+        }
+    }
+
+    @Test
+    public void splitEdgeKeepsTheBottomOfTheEdge() {
+        for (String text : new String[] { DENSE, SPARSE }) {
+            FlatTree tree = new FlatTree(text, 1);
+            int leaf = tree.addChild(FlatTree.ROOT, 0, text.length(), 1);
+            int mid = tree.splitEdge(leaf, 2);
+
+            assertEquals(mid, tree.getChild(FlatTree.ROOT, 'a'));
+            assertEquals(FlatTree.ROOT, tree.getParent(mid));
+            assertEquals(0, tree.getEdgeStart(mid));
+            assertEquals(2, tree.getEdgeLength(mid));
+            assertEquals(FlatTree.NONE, tree.getLeafIdx(mid));
+
+            assertEquals(leaf, tree.getChild(mid, 'c'));
+            assertEquals(mid, tree.getParent(leaf));
+            assertEquals(2, tree.getEdgeStart(leaf));
+            assertEquals(text.length() - 2, tree.getEdgeLength(leaf));
+            assertEquals(1, tree.getLeafIdx(leaf));
+
+            assertEquals(leaf, tree.getFirstChild(mid));
+            assertEquals(FlatTree.NONE, tree.getNextSibling(leaf));
+            assertEquals(FlatTree.NONE, tree.getNextSibling(mid));
+        }
+    }
+
+    @Test
+    public void addChildListsEveryChildOnce() {
+        for (String text : new String[] { DENSE, SPARSE }) {
+            FlatTree tree = new FlatTree(text, 1);
+            Set<Integer> added = new HashSet<Integer>();
+            for (int i = 0; i < text.length(); i++) {
+                if (tree.getChild(FlatTree.ROOT, text.charAt(i)) == FlatTree.NONE) {
+                    added.add(tree.addChild(FlatTree.ROOT, i, text.length() - i, i + 1));
+                }
+            }
+
+            Set<Integer> listed = new HashSet<Integer>();
+            for (int c = tree.getFirstChild(FlatTree.ROOT); c != FlatTree.NONE; c = tree.getNextSibling(c)) {
+                assertTrue(listed.add(c));
+                assertTrue(tree.isLeaf(c));
+            }
+            assertEquals(added, listed);
+            assertEquals(added.size() + 1, tree.size());
+        }
+    }
+
+    @Test
+    public void rejectsInvalidEdges() {
+        final FlatTree tree = new FlatTree(DENSE, 1);
+        final int leaf = tree.addChild(FlatTree.ROOT, 0, DENSE.length(), 1);
+        assertThrows(IllegalArgumentException.class, () -> tree.addChild(FlatTree.ROOT, 1, -1, 2));
+        assertThrows(IllegalArgumentException.class, () -> tree.splitEdge(leaf, 0));
+        assertThrows(IllegalArgumentException.class, () -> tree.splitEdge(leaf, DENSE.length()));
+    }
+
+}
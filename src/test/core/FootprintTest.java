@@ -0,0 +1,78 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FootprintTest {
+
+    @TempDir
+    Path dir;
+
+    private static long estimate(String text, String representation) {
+        for (Footprint.Estimate e : Footprint.estimate(text, text.length())) {
+            if (e.representation.equals(representation)) return e.bytes;
+        }
+        throw new AssertionError("No estimate for " + representation);
+    }
+
+    @Test
+    public void estimatesMatchBuiltIndexesWhenSamplingEverything() throws IOException {
+        Random random = new Random(1);
+        for (String kind : Inputs.KINDS) {
+            String text = Inputs.generate(kind, 5000, random);
+
+            McCreight mc = new McCreight(text);
+            Footprint tree = Footprint.of(mc);
+            assertEquals(estimate(text, "McCreight"), tree.getTotalBytes(), kind);
+
+            assertEquals(estimate(text, "SuffixArray"), Footprint.of(new SuffixArray(text)).getTotalBytes(), kind);
+
+            File file = dir.resolve(kind + ".idx").toFile();
+            IndexFile.write(mc.getTree(), mc.getAlphabet(), file);
+            MappedIndex index = new MappedIndex(file);
+            try {
+                Footprint mapped = Footprint.of(index);
+                assertEquals(estimate(text, "IndexFile"), mapped.getMappedBytes(), kind);
+                assertEquals(file.length(), mapped.getMappedBytes(), kind);
+                assertEquals(tree.getNodeCount(), mapped.getNodeCount(), kind);
+                assertEquals(tree.getLeafCount(), mapped.getLeafCount(), kind);
+            } finally {
+                index.close();
+            }
+        }
+    }
+
+    @Test
+    public void reportsOtherEngines() {
+        String text = Inputs.generate("dna", 5000, new Random(2));
+
+        Ukkonen uk = new Ukkonen(text);
+        uk.finish();
+        Footprint online = Footprint.of(uk);
+        assertEquals(text.length() + 1, online.getLeafCount());
+        assertTrue(online.getBytes("text") < online.getBytes("edgeStart") / 4);
+
+        Footprint parallel = Footprint.of(new ParallelSuffixTree(text));
+        assertEquals(Footprint.of(new McCreight(text)).getNodeCount(), parallel.getNodeCount());
+
+        List<String> docs = new ArrayList<String>();
+        docs.add(text.substring(0, 2000));
+        docs.add(text.substring(2000));
+        Footprint generalized = Footprint.of(new GeneralizedSuffixTree(docs));
+        assertEquals(text.length() + docs.size() + 1, generalized.getLeafCount());
+        assertTrue(generalized.getBytes("docCount") > 0);
+        assertEquals(0, generalized.getBytes("documents"));
+        assertEquals(0, generalized.getMappedBytes());
+    }
+
+}
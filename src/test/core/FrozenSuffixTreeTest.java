@@ -0,0 +1,41 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class FrozenSuffixTreeTest {
+
+    @Test
+    public void batchSearchMatchesSingleSearches() {
+        Random random = new Random(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (String kind : Inputs.KINDS) {
+                String text = Inputs.generate(kind, 5000, random);
+                FrozenSuffixTree view = new McCreight(text).freeze();
+
+                List<String> queries = new ArrayList<String>();
+                for (int k = 0; k < 500; k++) {
+                    int i = random.nextInt(text.length());
+                    queries.add(text.substring(i, Math.min(text.length(), i + 1 + random.nextInt(8))));
+                }
+                queries.add("zzzz");
+
+                List<List<Integer>> all = view.searchAll(queries, pool);
+                assertEquals(queries.size(), all.size());
+                for (int q = 0; q < queries.size(); q++) {
+                    assertEquals(Naive.occurrences(text, queries.get(q)), Naive.sorted(all.get(q)), queries.get(q));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,78 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class GeneralizedSuffixTreeTest {
+
+    private static void assertSearches(List<String> docs, String query) {
+        GeneralizedSuffixTree gst = new GeneralizedSuffixTree(docs);
+
+        Set<GeneralizedSuffixTree.Occurrence> expected = new HashSet<GeneralizedSuffixTree.Occurrence>();
+        List<Integer> containing = new ArrayList<Integer>();
+        for (int d = 0; d < docs.size(); d++) {
+            List<Integer> occ = Naive.occurrences(docs.get(d), query);
+            for (int i : occ) expected.add(new GeneralizedSuffixTree.Occurrence(d, i));
+            if (!occ.isEmpty()) containing.add(d);
+        }
+
+        List<GeneralizedSuffixTree.Occurrence> found = gst.search(query);
+        assertEquals(expected.size(), found.size(), query);
+        assertEquals(expected, new HashSet<GeneralizedSuffixTree.Occurrence>(found), query);
+        assertEquals(containing.size(), gst.countDocuments(query), query);
+        List<Integer> documents = gst.documentsContaining(query);
+        Collections.sort(documents);
+        assertEquals(containing, documents, query);
+    }
+
+    @Test
+    public void matchesNaiveScanOfEachDocument() {
+        Random random = new Random(1);
+        for (int round = 0; round < 50; round++) {
+            List<String> docs = new ArrayList<String>();
+            int count = 1 + random.nextInt(8);
+            for (int d = 0; d < count; d++) {
+                String kind = Inputs.KINDS[random.nextInt(Inputs.KINDS.length)];
+                docs.add(Inputs.generate(kind, random.nextInt(60), random));
+            }
+            for (int k = 0; k < 20; k++) {
+                String doc = docs.get(random.nextInt(count));
+                if (doc.isEmpty()) continue;
+                int i = random.nextInt(doc.length());
+                assertSearches(docs, doc.substring(i, Math.min(doc.length(), i + 1 + random.nextInt(6))));
+            }
+            assertSearches(docs, "zzzz");
+        }
+    }
+
+    @Test
+    public void reportsEmptyDocumentsAtTheirOwnId() {
+        List<String> docs = new ArrayList<String>();
+        docs.add("");
+        docs.add("ab");
+        docs.add("");
+        docs.add("");
+        docs.add("b");
+        assertSearches(docs, "b");
+        assertSearches(docs, "ab");
+    }
+
+    @Test
+    public void findsNoQueryAcrossDocuments() {
+        List<String> docs = new ArrayList<String>();
+        docs.add("abab");
+        docs.add("ab");
+        assertSearches(docs, "b" + GeneralizedSuffixTree.SEPARATOR + "a");
+        assertSearches(docs, "b" + GeneralizedSuffixTree.SEPARATOR);
+        assertSearches(docs, String.valueOf(GeneralizedSuffixTree.SEPARATOR));
+    }
+
+}
@@ -0,0 +1,74 @@
+package core;
+
+import java.util.Random;
+
+/**
+ * Generated inputs for the tests and benchmarks.
+ */
+public class Inputs {
+
+    public static final String[] KINDS = { "fibonacci", "random", "dna", "periodic" };
+
+    /**
+     * Generates an input of a given size and kind:
+     *   fibonacci  a prefix of a Fibonacci string, rich in repeats
+     *   random     uniformly random lowercase letters
+     *   dna        acgt with a tenth copied, with mutations, from earlier on
+     *   periodic   a random word of seven letters, repeated
+     */
+    public static String generate(String kind, int size, Random random) {
+        StringBuilder sb = new StringBuilder(size);
+        if (kind.equals("fibonacci")) {
+            int k = 1;
+            String fib = Fibonacci.generate("a", "b", k);
+            while (fib.length() < size) fib = Fibonacci.generate("a", "b", ++k);
+            return fib.substring(0, size);
+        } else if (kind.equals("random")) {
+            for (int i = 0; i < size; i++) sb.append((char) ('a' + random.nextInt(26)));
+        } else if (kind.equals("dna")) {
+            String acgt = "acgt";
+            while (sb.length() < size) {
+                if (sb.length() > 1000 && random.nextInt(10) == 0) {
+                    int length = Math.min(50 + random.nextInt(450), size - sb.length());
+                    int from = random.nextInt(sb.length() - length);
+                    for (int i = 0; i < length; i++) {
+                        char c = (random.nextInt(50) == 0) ? acgt.charAt(random.nextInt(4)) : sb.charAt(from + i);
+                        sb.append(c);
+                    }
+                } else {
+                    for (int i = 0; i < 100 && sb.length() < size; i++) sb.append(acgt.charAt(random.nextInt(4)));
+                }
+            }
+        } else if (kind.equals("periodic")) {
+            char[] word = new char[7];
+            for (int i = 0; i < word.length; i++) word[i] = (char) ('a' + random.nextInt(26));
+            for (int i = 0; i < size; i++) sb.append(word[i % word.length]);
+        } else {
+            throw new IllegalArgumentException("Unknown input "+kind);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Random text over the first sigma letters from 'a'.
+     */
+    public static String random(int size, int sigma, Random random) {
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) sb.append((char) ('a' + random.nextInt(sigma)));
+        return sb.toString();
+    }
+
+    /**
+     * Picks substrings of the text to search for, so every search finds something.
+     */
+    public static String[] patterns(String text, int length, int count, Random random) {
+        length = Math.min(length, text.length());
+        String[] res = new String[count];
+        for (int i = 0; i < res.length; i++) {
+            int start = random.nextInt(text.length() - length + 1);
+            res[i] = text.substring(start, start + length);
+        }
+        return res;
+    }
+
+}
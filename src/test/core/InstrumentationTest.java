@@ -0,0 +1,185 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Instrumentation.ENABLED is fixed when the class is loaded, so each run of
+ * this test checks one of the two modes. The build runs it once with
+ * -Dcore.instrumentation=true and once without.
+ */
+public class InstrumentationTest {
+
+    @TempDir
+    Path dir;
+
+    private static String[] inputs() {
+        Random random = new Random(1);
+        String[] res = new String[Inputs.KINDS.length + 1];
+        for (int i = 0; i < Inputs.KINDS.length; i++) res[i] = Inputs.generate(Inputs.KINDS[i], 20000, random);
+        res[Inputs.KINDS.length] = "a".repeat(20000);
+        return res;
+    }
+
+    @Test
+    public void countsConstructionWithinTheLinearBound() {
+        assumeTrue(Instrumentation.ENABLED);
+        for (String text : inputs()) {
+            Instrumentation.reset();
+            McCreight mc = new McCreight(text);
+            Instrumentation.Snapshot s = Instrumentation.snapshot();
+            long n = text.length() + 1;
+
+            assertEquals(1, s.builds);
+            assertEquals(n, s.buildChars);
+            assertEquals(mc.getTree().size(), s.nodes);
+            assertTrue(s.buildNanos > 0);
+
+            // Every node but the root and the n leaves comes from a split, and
+            // McCreight's amortized bounds hold for the scans
+            assertEquals(s.nodes - n - 1, s.edgeSplits);
+            assertTrue(s.fastscanHops > 0);
+            assertTrue(s.slowscanComparisons > 0);
+            assertTrue(s.fastscanHops <= 3 * n, s.fastscanHops+" hops for "+n+" characters");
+            assertTrue(s.slowscanComparisons <= 2 * n, s.slowscanComparisons+" comparisons for "+n+" characters");
+        }
+    }
+
+    @Test
+    public void countsTheBuildOfEveryEngine() {
+        assumeTrue(Instrumentation.ENABLED);
+        String text = Inputs.generate("dna", 5000, new Random(3));
+        long n = text.length() + 1;
+
+        Instrumentation.reset();
+        ParallelSuffixTree pst = new ParallelSuffixTree(text);
+        assertBuild(n, pst.getTree().size(), 0);
+
+        Instrumentation.reset();
+        new SuffixArray(text);
+        assertBuild(n, 0, 0);
+
+        // Ukkonen's build only ends with finish, and splits an edge for every internal node
+        Instrumentation.reset();
+        Ukkonen uk = new Ukkonen(text);
+        assertEquals(0, Instrumentation.snapshot().builds);
+        uk.finish();
+        assertBuild(n, uk.getTree().size(), uk.getTree().size() - n - 1);
+    }
+
+    private static void assertBuild(long chars, long nodes, long splits) {
+        Instrumentation.Snapshot s = Instrumentation.snapshot();
+        assertEquals(1, s.builds);
+        assertEquals(chars, s.buildChars);
+        assertEquals(nodes, s.nodes);
+        assertEquals(splits, s.edgeSplits);
+        assertEquals(0, s.fastscanHops);
+        assertEquals(0, s.slowscanComparisons);
+    }
+
+    @Test
+    public void countsTheSearchesOfEveryEngine() throws IOException {
+        assumeTrue(Instrumentation.ENABLED);
+        String text = Inputs.generate("dna", 5000, new Random(4));
+        McCreight mc = new McCreight(text);
+        File file = dir.resolve("index.idx").toFile();
+        IndexFile.write(mc.getTree(), mc.getAlphabet(), file);
+        MappedIndex mapped = new MappedIndex(file);
+        try {
+            List<SearchIndex> indexes = Arrays.asList(mc, new ParallelSuffixTree(text), new SuffixArray(text), mapped, new Ukkonen(text));
+            for (SearchIndex index : indexes) {
+                Instrumentation.reset();
+                int hits = index.search("acg").size() + index.search("acgtx").size();
+                assertSearches(2, 8, hits);
+            }
+
+            // Hits and misses of the cache are both searches
+            mc.enableCache(1000);
+            Instrumentation.reset();
+            int hits = mc.search("acg").size() + mc.search("acg").size();
+            assertSearches(2, 6, hits);
+
+            GeneralizedSuffixTree gst = new GeneralizedSuffixTree(Arrays.asList(text, text.substring(100)));
+            Instrumentation.reset();
+            assertSearches(1, 3, gst.search("acg").size());
+        } finally {
+            mapped.close();
+        }
+    }
+
+    private static void assertSearches(long searches, long chars, long hits) {
+        Instrumentation.Snapshot s = Instrumentation.snapshot();
+        assertEquals(searches, s.searches);
+        assertEquals(chars, s.searchChars);
+        assertEquals(hits, s.searchHits);
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void countsSearchesAndTandemRepeats() {
+        assumeTrue(Instrumentation.ENABLED);
+        String text = Inputs.generate("dna", 5000, new Random(2));
+        McCreight mc = new McCreight(text);
+        Instrumentation.reset();
+
+        List<Integer> hits = mc.search("acg");
+        mc.search("acgtacgtacgt");
+        Instrumentation.Snapshot s = Instrumentation.snapshot();
+        assertEquals(2, s.searches);
+        assertEquals(15, s.searchChars);
+        assertEquals(hits.size() + mc.search("acgtacgtacgt").size(), s.searchHits);
+
+        final long[] repeats = new long[1];
+        TandemRepeat.find(mc.getInput(), mc.getTree(), new RepeatSink() {
+            public void repeat(int idx, int length, boolean branching) {
+                repeats[0]++;
+            }
+        });
+        s = Instrumentation.snapshot();
+        assertEquals(1, s.tandemRuns);
+        assertEquals(text.length() + 1, s.tandemChars);
+        assertEquals(repeats[0], s.tandemRepeats);
+        assertTrue(repeats[0] > 0);
+    }
+
+    @Test
+    public void countsNothingWhenDisabled() {
+        assumeFalse(Instrumentation.ENABLED);
+        Instrumentation.reset();
+        for (String text : inputs()) {
+            McCreight mc = new McCreight(text);
+            mc.search(text.substring(0, 10));
+            TandemRepeat.find(mc.getInput(), mc.getTree(), new RepeatSink() {
+                public void repeat(int idx, int length, boolean branching) {}
+            });
+
+            Ukkonen uk = new Ukkonen(text);
+            uk.finish();
+            List<SearchIndex> others = Arrays.asList(uk, new ParallelSuffixTree(text), new SuffixArray(text));
+            for (SearchIndex index : others) index.search(text.substring(0, 10));
+        }
+        Instrumentation.Snapshot s = Instrumentation.snapshot();
+        assertEquals(0, s.builds);
+        assertEquals(0, s.nodes);
+        assertEquals(0, s.fastscanHops);
+        assertEquals(0, s.slowscanComparisons);
+        assertEquals(0, s.edgeSplits);
+        assertEquals(0, s.searches);
+        assertEquals(0, s.searchHits);
+        assertEquals(0, s.tandemRuns);
+        assertEquals(0, s.tandemRepeats);
+    }
+
+}
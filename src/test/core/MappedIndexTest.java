@@ -0,0 +1,57 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedIndexTest {
+
+    @TempDir
+    Path dir;
+
+    private void assertRoundTrip(String text, Random random) throws IOException {
+        McCreight mc = new McCreight(text);
+        File file = dir.resolve("index.idx").toFile();
+        IndexFile.write(mc.getTree(), mc.getAlphabet(), file);
+
+        MappedIndex index = new MappedIndex(file);
+        try {
+            assertEquals(mc.getTree().size(), index.size());
+            assertEquals(text.length() + 1, index.getTextLength());
+            for (int k = 0; k < 30; k++) {
+                int i = random.nextInt(text.length() + 1);
+                String query = text.substring(i, Math.min(text.length(), i + random.nextInt(12)));
+                if (k % 5 == 4) query += "b";
+                assertEquals(Naive.occurrences(text, query), Naive.sorted(index.search(query)), query);
+            }
+        } finally {
+            index.close();
+        }
+    }
+
+    @Test
+    public void searchesLikeTheBuiltTree() throws IOException {
+        Random random = new Random(1);
+        for (String kind : Inputs.KINDS) assertRoundTrip(Inputs.generate(kind, 3000, random), random);
+        for (int round = 0; round < 50; round++) {
+            assertRoundTrip(Inputs.random(1 + random.nextInt(60), 1 + random.nextInt(400), random), random);
+        }
+    }
+
+    @Test
+    public void rejectsOtherFiles() throws IOException {
+        File file = dir.resolve("other.idx").toFile();
+        Files.write(file.toPath(), "not an index file at all".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> new MappedIndex(file));
+    }
+
+}
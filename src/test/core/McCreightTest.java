@@ -0,0 +1,64 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class McCreightTest {
+
+    private static void assertSearches(String text, Random random) {
+        McCreight mc = new McCreight(text);
+        FlatTreeTest.assertSuffixTree(mc.getTree().getText().toString(), mc.getTree());
+        for (int k = 0; k < 30; k++) {
+            int i = random.nextInt(text.length() + 1);
+            String query = text.substring(i, Math.min(text.length(), i + random.nextInt(12)));
+            if (k % 5 == 4) query += "b";
+            List<Integer> expected = Naive.occurrences(text, query);
+            assertEquals(expected, Naive.sorted(mc.search(query)), query);
+            assertEquals(expected.size(), mc.count(query), query);
+
+            int limit = random.nextInt(5);
+            List<Integer> some = mc.search(query, limit);
+            assertEquals(Math.min(limit, expected.size()), some.size(), query);
+            assertTrue(expected.containsAll(some), query);
+            assertEquals(some.size(), Naive.sorted(some).stream().distinct().count(), query);
+        }
+    }
+
+    @Test
+    public void matchesNaiveScanOnRandomText() {
+        Random random = new Random(1);
+        for (int round = 0; round < 300; round++) {
+            int sigma = 1 + random.nextInt(round % 3 == 0 ? 2 : 300);
+            assertSearches(Inputs.random(1 + random.nextInt(100), sigma, random), random);
+        }
+    }
+
+    @Test
+    public void matchesNaiveScanOnGeneratedInputs() {
+        Random random = new Random(2);
+        for (String kind : Inputs.KINDS) {
+            for (int size : new int[] { 10, 500, 5000 }) assertSearches(Inputs.generate(kind, size, random), random);
+        }
+    }
+
+    @Test
+    public void buildsWithoutCopyingSubstrings() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        String text = Inputs.generate("fibonacci", 100000, new Random(3));
+        new McCreight(text);
+
+        // The tree is a few ints per node and at most 2n nodes, while copying
+        // the tails of the suffixes would take quadratic space
+        long before = threads.getCurrentThreadAllocatedBytes();
+        new McCreight(text);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < 200L * text.length(), allocated+" bytes allocated");
+    }
+
+}
@@ -0,0 +1,52 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Brute force answers to check the engines against.
+ */
+public class Naive {
+
+    /**
+     * @return the 1-based start of every occurrence of the pattern in the
+     * text, in order. The empty pattern occurs at 1..n+1.
+     */
+    public static List<Integer> occurrences(String text, String pattern) {
+        List<Integer> res = new ArrayList<Integer>();
+        for (int i = 0; i + pattern.length() <= text.length(); i++) {
+            if (text.startsWith(pattern, i)) res.add(i + 1);
+        }
+        return res;
+    }
+
+    /**
+     * @return a sorted copy of a list of occurrences
+     */
+    public static List<Integer> sorted(List<Integer> occurrences) {
+        List<Integer> res = new ArrayList<Integer>(occurrences);
+        Collections.sort(res);
+        return res;
+    }
+
+    /**
+     * @return every tandem repeat (i, l, 2) of a string, as i << 32 | l, and
+     * whether it is branching, i.e. can't be moved one character right
+     */
+    public static Map<Long, Boolean> tandemRepeats(String s) {
+        Map<Long, Boolean> res = new HashMap<Long, Boolean>();
+        for (int i = 0; i < s.length(); i++) {
+            for (int l = 1; i + 2 * l <= s.length(); l++) {
+                if (s.regionMatches(i, s, i + l, l)) {
+                    boolean branching = i + 2 * l == s.length() || s.charAt(i + 2 * l) != s.charAt(i + l);
+                    res.put((long) i << 32 | l, branching);
+                }
+            }
+        }
+        return res;
+    }
+
+}
@@ -0,0 +1,106 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+public class ParallelSuffixTreeTest {
+
+    private static final int[] POOL_SIZES = { 1, 2, 3, 8 };
+    private static ForkJoinPool[] pools;
+
+    @BeforeAll
+    public static void startPools() {
+        pools = new ForkJoinPool[POOL_SIZES.length];
+        for (int i = 0; i < pools.length; i++) pools[i] = new ForkJoinPool(POOL_SIZES[i]);
+    }
+
+    @AfterAll
+    public static void stopPools() {
+        for (ForkJoinPool pool : pools) pool.shutdown();
+    }
+
+    /**
+     * @return the path label of a node, as ranks
+     */
+    private static String pathLabel(FlatTree tree, int n) {
+        StringBuilder sb = new StringBuilder();
+        for (; n != FlatTree.ROOT; n = tree.getParent(n)) sb.insert(0, tree.getLabel(n));
+        return sb.toString();
+    }
+
+    private static void assertSameTree(String text, ForkJoinPool pool, Random random) {
+        McCreight mc = new McCreight(text);
+        ParallelSuffixTree pst = new ParallelSuffixTree(text, pool);
+        FlatTree tree = pst.getTree();
+        String where = text + " on " + pool.getParallelism() + " threads";
+        assertEquals(mc.getTree().size(), tree.size(), where);
+
+        // Every internal node links to the node of its path label without the
+        // first character (checked on short texts, as labels can be long)
+        for (int n = 0; n < tree.size() && text.length() <= 1000; n++) {
+            if (n == FlatTree.ROOT || tree.isLeaf(n)) continue;
+            String label = pathLabel(tree, n);
+            assertEquals(label.substring(1), pathLabel(tree, tree.getSuffixLink(n)), where);
+        }
+
+        for (int k = 0; k < 30; k++) {
+            int i = random.nextInt(text.length());
+            String query = text.substring(i, Math.min(text.length(), i + 1 + random.nextInt(10)));
+            if (k % 5 == 4) query += "b";
+            assertEquals(Naive.occurrences(text, query), Naive.sorted(pst.search(query)), where + " / " + query);
+        }
+        assertEquals(Naive.occurrences(text, ""), Naive.sorted(pst.search("")), where);
+    }
+
+    @Test
+    public void matchesMcCreightOnShortInputs() {
+        Random random = new Random(1);
+        for (int round = 0; round < 300; round++) {
+            int sigma = 1 + random.nextInt(round % 3 == 0 ? 2 : 26);
+            String text = Inputs.random(1 + random.nextInt(80), sigma, random);
+            assertSameTree(text, pools[round % pools.length], random);
+        }
+    }
+
+    @Test
+    public void matchesMcCreightOnGeneratedInputs() {
+        Random random = new Random(2);
+        for (String kind : Inputs.KINDS) {
+            for (int size : new int[] { 1000, 20000 }) {
+                String text = Inputs.generate(kind, size, random);
+                for (ForkJoinPool pool : pools) assertSameTree(text, pool, random);
+            }
+        }
+    }
+
+    @Test
+    public void sortsLikeSaisAndKasai() {
+        Random random = new Random(3);
+        for (int round = 0; round < 60; round++) {
+            String text;
+            if (round % 4 == 0) {
+                text = Inputs.generate(Inputs.KINDS[round / 4 % Inputs.KINDS.length], 1 + random.nextInt(50000), random);
+            } else {
+                text = Inputs.random(1 + random.nextInt(round < 30 ? 100 : 30000), 1 + random.nextInt(300), random);
+            }
+            Alphabet alphabet = Alphabet.of(text);
+            EncodedText input = alphabet.encode(text);
+            int[] s = new int[input.length()];
+            for (int i = 0; i < s.length; i++) s[i] = input.charAt(i);
+            int[] sa = SuffixArray.sais(s, alphabet.size());
+
+            ParallelSuffixSort sorter = new ParallelSuffixSort(input, alphabet.size(), pools[round % pools.length]);
+            int[] parallel = sorter.suffixArray();
+            assertArrayEquals(sa, parallel, text);
+            assertArrayEquals(SuffixArray.kasai(input, sa), sorter.lcp(parallel), text);
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class QueryServerTest {
+
+    private static final int CLIENTS = 16;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void answersEveryLineInOrder() throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            QueryServer server = new QueryServer(new McCreight("abcabcab").freeze(), executor);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            server.serve(new ByteArrayInputStream("ab\nx\nabc\n".getBytes(StandardCharsets.UTF_8)), out);
+            assertEquals("3\t1 4 7\n0\t\n2\t1 4\n", out.toString(StandardCharsets.UTF_8));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void servesConcurrentTcpClients() throws Exception {
+        ServerSocketChannel channel = QueryServer.openTcp(0);
+        assertServesConcurrentClients(channel, channel.getLocalAddress(), CLIENTS);
+    }
+
+    @Test
+    public void servesConcurrentUnixSocketClients() throws Exception {
+        ServerSocketChannel channel = QueryServer.openUnix(dir.resolve("query.sock"));
+        assertServesConcurrentClients(channel, channel.getLocalAddress(), CLIENTS);
+    }
+
+    @Test
+    public void servesMoreClientsThanItServesAtOnce() throws Exception {
+        ServerSocketChannel channel = QueryServer.openTcp(0);
+        assertServesConcurrentClients(channel, channel.getLocalAddress(), QueryServer.MAX_CONNECTIONS + CLIENTS);
+    }
+
+    @Test
+    public void doesNotReplaceARegularFile() throws IOException {
+        Path file = dir.resolve("index.txt");
+        Files.write(file, "data".getBytes(StandardCharsets.UTF_8));
+        assertThrows(FileAlreadyExistsException.class, () -> QueryServer.openUnix(file));
+        assertEquals("data", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertThrows(FileAlreadyExistsException.class, () -> QueryServer.openUnix(dir));
+    }
+
+    @Test
+    public void doesNotReplaceASocketInUse() throws IOException {
+        Path path = dir.resolve("live.sock");
+        ServerSocketChannel live = QueryServer.openUnix(path);
+        try {
+            assertThrows(FileAlreadyExistsException.class, () -> QueryServer.openUnix(path));
+        } finally {
+            live.close();
+        }
+    }
+
+    @Test
+    public void replacesAStaleSocket() throws IOException {
+        Path path = dir.resolve("stale.sock");
+        ServerSocketChannel old = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        old.bind(UnixDomainSocketAddress.of(path));
+        old.close();
+        assertTrue(Files.exists(path));
+
+        ServerSocketChannel server = QueryServer.openUnix(path);
+        server.close();
+    }
+
+    /**
+     * @return the answer line the server gives for a pattern
+     */
+    private static String expectedAnswer(String text, String pattern) {
+        List<Integer> occ = Naive.occurrences(text, pattern);
+        StringBuilder sb = new StringBuilder();
+        sb.append(occ.size()).append('\t');
+        for (int i = 0; i < occ.size(); i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(occ.get(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Serves a channel on a thread of its own and connects clients to it at
+     * the same time. The clients only send once all of them are connected, so
+     * the server has to take connections beyond MAX_CONNECTIONS as others
+     * close. Each client sends its own patterns and must get their answers
+     * back in order. Closing the channel must stop the server.
+     */
+    private static void assertServesConcurrentClients(final ServerSocketChannel channel, final SocketAddress address, int clients) throws Exception {
+        final String text = Inputs.generate("dna", 5000, new Random(1));
+        ExecutorService searches = Executors.newFixedThreadPool(4);
+        ExecutorService clientThreads = Executors.newFixedThreadPool(clients);
+        final QueryServer server = new QueryServer(new McCreight(text).freeze(), searches);
+        final Exception[] failure = new Exception[1];
+        final CountDownLatch connected = new CountDownLatch(clients);
+        Thread serverThread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    server.serve(channel);
+                } catch (Exception e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        serverThread.start();
+
+        try {
+            List<Future<?>> done = new ArrayList<Future<?>>();
+            for (int c = 0; c < clients; c++) {
+                final Random random = new Random(c);
+                done.add(clientThreads.submit(new Callable<Void>() {
+                    public Void call() throws IOException, InterruptedException {
+                        List<String> patterns = new ArrayList<String>();
+                        StringBuilder request = new StringBuilder();
+                        for (int k = 0; k < 200; k++) {
+                            int i = random.nextInt(text.length());
+                            String pattern = text.substring(i, Math.min(text.length(), i + 1 + random.nextInt(12)));
+                            if (k % 7 == 6) pattern += "x";
+                            patterns.add(pattern);
+                            request.append(pattern).append('\n');
+                        }
+
+                        SocketChannel client = SocketChannel.open(address);
+                        try {
+                            connected.countDown();
+                            connected.await();
+                            ByteBuffer buf = ByteBuffer.wrap(request.toString().getBytes(StandardCharsets.UTF_8));
+                            while (buf.hasRemaining()) client.write(buf);
+                            client.shutdownOutput();
+
+                            BufferedReader reader = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+                            for (String pattern : patterns) assertEquals(expectedAnswer(text, pattern), reader.readLine(), pattern);
+                            assertNull(reader.readLine());
+                        } finally {
+                            client.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> f : done) f.get();
+        } finally {
+            channel.close();
+            serverThread.join(10000);
+            clientThreads.shutdown();
+            searches.shutdown();
+        }
+        assertFalse(serverThread.isAlive(), "The server kept running after its channel was closed");
+        if (failure[0] != null) throw failure[0];
+    }
+
+}
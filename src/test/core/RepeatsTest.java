@@ -0,0 +1,119 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class RepeatsTest {
+
+    /**
+     * @return every maximal repeat of at least minLength with its number of
+     * occurrences, found by checking every substring
+     */
+    private static Map<String, Integer> naiveMaximalRepeats(String s, int minLength) {
+        Map<String, Integer> res = new HashMap<String, Integer>();
+        for (int i = 0; i < s.length(); i++) {
+            for (int j = i + Math.max(minLength, 1); j <= s.length(); j++) {
+                String w = s.substring(i, j);
+                if (res.containsKey(w)) continue;
+                Set<Integer> before = new HashSet<Integer>();
+                Set<Integer> after = new HashSet<Integer>();
+                int count = 0;
+                for (int p : Naive.occurrences(s, w)) {
+                    count++;
+                    before.add((p == 1) ? -1 : (int) s.charAt(p - 2));
+                    after.add((p - 1 + w.length() == s.length()) ? -1 : (int) s.charAt(p - 1 + w.length()));
+                }
+                if (count >= 2 && before.size() > 1 && after.size() > 1) res.put(w, count);
+            }
+        }
+        return res;
+    }
+
+    private static int longestRepeat(String s) {
+        int best = 0;
+        for (int i = 0; i < s.length(); i++) {
+            for (int j = i + 1; j < s.length(); j++) {
+                int l = 0;
+                while (j + l < s.length() && s.charAt(i + l) == s.charAt(j + l)) l++;
+                best = Math.max(best, l);
+            }
+        }
+        return best;
+    }
+
+    private static int longestCommon(String a, String b) {
+        int best = 0;
+        for (int i = 0; i < a.length(); i++) {
+            for (int j = 0; j < b.length(); j++) {
+                int l = 0;
+                while (i + l < a.length() && j + l < b.length() && a.charAt(i + l) == b.charAt(j + l)) l++;
+                best = Math.max(best, l);
+            }
+        }
+        return best;
+    }
+
+    private static void assertRepeats(final String text) {
+        McCreight mc = new McCreight(text);
+        for (int minLength : new int[] { 0, 2 }) {
+            final Map<String, Integer> found = new HashMap<String, Integer>();
+            final int[] reported = { 0 };
+            mc.findMaximalRepeats(minLength, new Repeats.Sink() {
+                public void repeat(int position, int length, int count) {
+                    found.put(text.substring(position, position + length), count);
+                    reported[0]++;
+                }
+            });
+            assertEquals(found.size(), reported[0], text);
+            assertEquals(naiveMaximalRepeats(text, minLength), found, text);
+        }
+
+        int[] lrs = mc.longestRepeatedSubstring();
+        int longest = longestRepeat(text);
+        if (longest == 0) {
+            assertNull(lrs, text);
+        } else {
+            assertEquals(longest, lrs[1], text);
+            String w = text.substring(lrs[0], lrs[0] + lrs[1]);
+            assertTrue(Naive.occurrences(text, w).size() >= 2, text);
+        }
+    }
+
+    @Test
+    public void maximalAndLongestRepeatsMatchNaive() {
+        Random random = new Random(1);
+        for (int round = 0; round < 300; round++) {
+            assertRepeats(Inputs.random(1 + random.nextInt(40), 1 + random.nextInt(5), random));
+        }
+        for (String kind : Inputs.KINDS) assertRepeats(Inputs.generate(kind, 120, random));
+        for (int k = 0; k < 10; k++) assertRepeats(Fibonacci.generate("a", "b", k));
+    }
+
+    @Test
+    public void longestCommonSubstringMatchesNaive() {
+        Random random = new Random(2);
+        for (int round = 0; round < 300; round++) {
+            int sigma = 1 + random.nextInt(6);
+            String a = Inputs.random(random.nextInt(50), sigma, random);
+            String b = Inputs.random(random.nextInt(50), sigma, random);
+            int[] lcs = Repeats.longestCommonSubstring(a, b);
+            int longest = longestCommon(a, b);
+            if (longest == 0) {
+                assertNull(lcs, a + " / " + b);
+            } else {
+                assertEquals(longest, lcs[2], a + " / " + b);
+                assertEquals(a.substring(lcs[0], lcs[0] + lcs[2]), b.substring(lcs[1], lcs[1] + lcs[2]), a + " / " + b);
+            }
+        }
+    }
+
+}
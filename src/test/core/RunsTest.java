@@ -0,0 +1,81 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+public class RunsTest {
+
+    /**
+     * @return every run as "start,end,period", found by trying every period
+     * at every start
+     */
+    private static Set<String> naiveRuns(String s) {
+        Set<String> res = new HashSet<String>();
+        int n = s.length();
+        for (int p = 1; 2 * p <= n; p++) {
+            int i = 0;
+            while (i + p < n) {
+                if (s.charAt(i) != s.charAt(i + p)) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i + p < n && s.charAt(i) == s.charAt(i + p)) i++;
+                int end = i + p;
+                if (end - start >= 2 * p && smallestPeriod(s.substring(start, end)) == p) {
+                    res.add(start + "," + end + "," + p);
+                }
+            }
+        }
+        return res;
+    }
+
+    private static int smallestPeriod(String s) {
+        for (int p = 1; p < s.length(); p++) {
+            if (s.regionMatches(0, s, p, s.length() - p)) return p;
+        }
+        return s.length();
+    }
+
+    private static void assertRuns(String text) {
+        Runs runs = new Runs(text);
+        Set<String> found = new HashSet<String>();
+        for (Runs.Run r : runs) found.add(r.start + "," + r.end + "," + r.period);
+        assertEquals(runs.size(), found.size(), text);
+        assertEquals(naiveRuns(text), found, text);
+
+        // The runs expand to every tandem repeat exactly once
+        Set<Long> repeats = new HashSet<Long>();
+        int count = 0;
+        for (Iterator<int[]> it = runs.tandemRepeats(); it.hasNext(); count++) {
+            int[] r = it.next();
+            repeats.add((long) r[0] << 32 | r[1]);
+        }
+        assertEquals(count, repeats.size(), text);
+        assertEquals(Naive.tandemRepeats(text).keySet(), repeats, text);
+    }
+
+    @Test
+    public void matchesNaiveRunsOnRandomText() {
+        Random random = new Random(1);
+        for (int round = 0; round < 500; round++) {
+            assertRuns(Inputs.random(1 + random.nextInt(60), 1 + random.nextInt(4), random));
+        }
+    }
+
+    @Test
+    public void matchesNaiveRunsOnGeneratedInputs() {
+        Random random = new Random(2);
+        for (String kind : Inputs.KINDS) {
+            for (int size : new int[] { 1, 2, 50, 300 }) assertRuns(Inputs.generate(kind, size, random));
+        }
+        for (int k = 0; k < 12; k++) assertRuns(Fibonacci.generate("a", "b", k));
+    }
+
+}
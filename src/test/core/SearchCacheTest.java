@@ -0,0 +1,56 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class SearchCacheTest {
+
+    @Test
+    public void answersLikeTheIndexWithinItsBound() {
+        Random random = new Random(1);
+        String text = Inputs.generate("dna", 5000, random);
+        String[] queries = Inputs.patterns(text, 3, 200, random);
+        SearchCache cache = new SearchCache(new McCreight(text).freeze(), 2000);
+
+        for (int k = 0; k < 5000; k++) {
+            // Skewed towards the first queries, so some stay cached
+            String query = queries[(int) (queries.length * Math.pow(random.nextDouble(), 3))];
+            assertEquals(Naive.occurrences(text, query), Naive.sorted(cache.search(query)), query);
+            assertEquals(Naive.occurrences(text, query), Naive.sorted(cache.positions(query)), query);
+            assertTrue(cache.getWeight() <= 2000);
+        }
+        assertEquals(10000, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getHitCount() > cache.getMissCount());
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsed() {
+        SearchCache cache = new SearchCache(new McCreight("abcabc").freeze(), 4);
+        cache.search("a"); // 2 occurrences
+        cache.search("b"); // 2
+        cache.search("a"); // Hit, so b is the least recently used
+        cache.search("x"); // Empty, weighs 1 and evicts b
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.getWeight());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.search("a");
+        assertEquals(2, cache.getHitCount());
+        cache.search("b");
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void doesNotCacheResultsLargerThanTheBound() {
+        SearchCache cache = new SearchCache(new McCreight("aaaaaaaa").freeze(), 3);
+        assertEquals(8, cache.search("a").size());
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+}
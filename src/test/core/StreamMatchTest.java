@@ -0,0 +1,61 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class StreamMatchTest {
+
+    private static List<Integer> positions(List<Long> matches) {
+        List<Integer> res = new ArrayList<Integer>();
+        for (long m : matches) res.add((int) m);
+        return res;
+    }
+
+    @Test
+    public void matchesAcrossBufferBoundaries() throws IOException {
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            String text = Inputs.generate(Inputs.KINDS[round % Inputs.KINDS.length], 1 + random.nextInt(3000), random);
+            int i = random.nextInt(text.length());
+            String pattern = text.substring(i, Math.min(text.length(), i + 1 + random.nextInt(12)));
+            StreamMatch sm = new StreamMatch(pattern, 1 + random.nextInt(64));
+            List<Integer> expected = Naive.occurrences(text, pattern);
+
+            final List<Long> chars = new ArrayList<Long>();
+            long count = sm.search(new StringReader(text), new StreamMatch.Listener() {
+                public void match(long position) { chars.add(position); }
+            });
+            assertEquals(expected, positions(chars), pattern);
+            assertEquals(expected.size(), count);
+
+            // Generated inputs are ASCII, so byte positions are char positions
+            final List<Long> bytes = new ArrayList<Long>();
+            sm.search(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), new StreamMatch.Listener() {
+                public void match(long position) { bytes.add(position); }
+            });
+            assertEquals(expected, positions(bytes), pattern);
+        }
+    }
+
+    @Test
+    public void reportsBytePositionsOfEncodedPatterns() throws IOException {
+        String text = "æblæ ø æblææblæ";
+        final List<Long> bytes = new ArrayList<Long>();
+        new StreamMatch("æblæ", 3).search(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), new StreamMatch.Listener() {
+            public void match(long position) { bytes.add(position); }
+        });
+        String latin = new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+        String pattern = new String("æblæ".getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1);
+        assertEquals(Naive.occurrences(latin, pattern), positions(bytes));
+    }
+
+}
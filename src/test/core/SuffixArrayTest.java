@@ -0,0 +1,67 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class SuffixArrayTest {
+
+    private static void assertIndex(String text, Random random) {
+        SuffixArray sa = new SuffixArray(text);
+        int[] suffixes = sa.getSuffixArray();
+        int[] lcp = sa.getLcp();
+        assertEquals(text.length() + 1, suffixes.length, text);
+
+        // Suffixes are sorted, and lcp holds the common prefix of neighbours
+        String ranks = sa.getInput().toString();
+        for (int r = 1; r < suffixes.length; r++) {
+            String a = ranks.substring(suffixes[r - 1]);
+            String b = ranks.substring(suffixes[r]);
+            assertTrue(a.compareTo(b) < 0, text);
+            int l = 0;
+            while (l < a.length() && l < b.length() && a.charAt(l) == b.charAt(l)) l++;
+            assertEquals(l, lcp[r], text);
+        }
+
+        for (int k = 0; k < 30; k++) {
+            int i = random.nextInt(text.length() + 1);
+            String query = text.substring(i, Math.min(text.length(), i + random.nextInt(12)));
+            if (k % 5 == 4) query += "b";
+            assertEquals(Naive.occurrences(text, query), Naive.sorted(sa.search(query)), text + " / " + query);
+        }
+        assertEquals(Naive.occurrences(text, "#"), sa.search("#"));
+    }
+
+    @Test
+    public void matchesNaiveScanOnRandomText() {
+        Random random = new Random(1);
+        for (int round = 0; round < 300; round++) {
+            int sigma = 1 + random.nextInt(round % 3 == 0 ? 2 : 300);
+            assertIndex(Inputs.random(1 + random.nextInt(100), sigma, random), random);
+        }
+    }
+
+    @Test
+    public void matchesNaiveScanOnGeneratedInputs() {
+        Random random = new Random(2);
+        for (String kind : Inputs.KINDS) {
+            for (int size : new int[] { 10, 500, 3000 }) assertIndex(Inputs.generate(kind, size, random), random);
+        }
+    }
+
+    @Test
+    public void findsEveryLongPatternOfAFibonacciString() {
+        String text = Fibonacci.generate("a", "b", 18);
+        SuffixArray sa = new SuffixArray(text);
+        Random random = new Random(3);
+        for (int k = 0; k < 200; k++) {
+            int i = random.nextInt(text.length() - 200);
+            String query = text.substring(i, i + 1 + random.nextInt(200));
+            assertEquals(Naive.occurrences(text, query), Naive.sorted(sa.search(query)), query);
+        }
+    }
+
+}
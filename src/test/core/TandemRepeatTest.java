@@ -0,0 +1,89 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class TandemRepeatTest {
+
+    /**
+     * Collects repeats, counting any reported twice.
+     */
+    private static class Collect implements RepeatSink {
+        final Map<Long, Boolean> repeats = new HashMap<Long, Boolean>();
+        int duplicates;
+
+        public void repeat(int idx, int length, boolean branching) {
+            if (repeats.put((long) idx << 32 | length, branching) != null) duplicates++;
+        }
+    }
+
+    private static void assertRepeats(String text, ForkJoinPool pool) {
+        Map<Long, Boolean> expected = Naive.tandemRepeats(text);
+        McCreight mc = new McCreight(text);
+        SuffixArray sa = new SuffixArray(text);
+
+        Collect streamed = new Collect();
+        TandemRepeat.find(mc.getInput(), mc.getTree(), streamed);
+        assertEquals(0, streamed.duplicates, text);
+        assertEquals(expected, streamed.repeats, text);
+
+        Collect fromArray = new Collect();
+        TandemRepeat.find(sa.getInput(), sa, fromArray);
+        assertEquals(0, fromArray.duplicates, text);
+        assertEquals(expected, fromArray.repeats, text);
+
+        for (TandemRepeat collected : new TandemRepeat[] {
+                new TandemRepeat(mc.getInput(), mc.getTree()),
+                new TandemRepeat(mc.getInput(), mc.getTree(), pool),
+                new TandemRepeat(sa.getInput(), sa) }) {
+            Collect replayed = new Collect();
+            collected.replay(replayed);
+            assertEquals(0, replayed.duplicates, text);
+            assertEquals(expected, replayed.repeats, text);
+            assertEquals(expected.size(), collected.size(), text);
+            int branching = 0;
+            for (boolean b : expected.values()) if (b) branching++;
+            assertEquals(branching, collected.getBranchingCount(), text);
+        }
+    }
+
+    @Test
+    public void matchesNaiveRepeats() {
+        Random random = new Random(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int round = 0; round < 300; round++) {
+                assertRepeats(Inputs.random(1 + random.nextInt(80), 1 + random.nextInt(4), random), pool);
+            }
+            for (String kind : Inputs.KINDS) assertRepeats(Inputs.generate(kind, 400, random), pool);
+            for (int k = 0; k < 13; k++) assertRepeats(Fibonacci.generate("a", "b", k), pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelRepeatsSplitLargeTrees() {
+        // Large enough for subtrees of their own tasks
+        String text = Inputs.generate("dna", 30000, new Random(2));
+        McCreight mc = new McCreight(text);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Collect sequential = new Collect();
+            TandemRepeat.find(mc.getInput(), mc.getTree(), sequential);
+            Collect parallel = new Collect();
+            new TandemRepeat(mc.getInput(), mc.getTree(), pool).replay(parallel);
+            assertEquals(0, parallel.duplicates);
+            assertEquals(sequential.repeats, parallel.repeats);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class UkkonenTest {
+
+    private static void assertSearches(Ukkonen uk, String text, Random random) {
+        for (int k = 0; k < 20; k++) {
+            int i = random.nextInt(text.length() + 1);
+            int j = Math.min(text.length(), i + random.nextInt(8));
+            String query = (k % 4 == 3) ? text.substring(i, j) + "a" : text.substring(i, j);
+            assertEquals(Naive.occurrences(text, query), Naive.sorted(uk.search(query)), text + " / " + query);
+        }
+    }
+
+    @Test
+    public void emptyQueryMatchesOtherEngines() {
+        Ukkonen uk = new Ukkonen("abc");
+        assertEquals(Naive.sorted(new McCreight("abc").search("")), Naive.sorted(uk.search("")));
+        uk.finish();
+        assertEquals(Naive.sorted(new McCreight("abc").search("")), Naive.sorted(uk.search("")));
+        assertEquals(Naive.occurrences("", ""), new Ukkonen().search(""));
+    }
+
+    @Test
+    public void searchesEveryPrefixWhileAppending() {
+        Random random = new Random(1);
+        for (String kind : new String[] { "fibonacci", "random", "dna", "periodic" }) {
+            String text = Inputs.generate(kind, 300, random);
+            Ukkonen uk = new Ukkonen();
+            for (int i = 0; i < text.length(); i++) {
+                uk.append(text.charAt(i));
+                assertSearches(uk, text.substring(0, i + 1), random);
+            }
+            uk.finish();
+            assertSearches(uk, text, random);
+        }
+    }
+
+    @Test
+    public void widensStorageAsTheAlphabetGrows() {
+        Random random = new Random(2);
+        StringBuilder sb = new StringBuilder();
+        Ukkonen uk = new Ukkonen();
+        for (int sigma : new int[] { 2, 4, 20, 255, 300, 1000 }) {
+            for (int i = 0; i < 500; i++) {
+                char c = (char) ('a' + random.nextInt(sigma));
+                sb.append(c);
+                uk.append(c);
+            }
+            assertSearches(uk, sb.toString(), random);
+        }
+        uk.finish();
+        assertSearches(uk, sb.toString(), random);
+    }
+
+    @Test
+    public void cannotAppendAfterFinish() {
+        Ukkonen uk = new Ukkonen("ab");
+        uk.finish();
+        assertThrows(IllegalStateException.class, () -> uk.append('a'));
+    }
+
+}